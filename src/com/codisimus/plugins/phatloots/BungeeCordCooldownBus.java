@@ -0,0 +1,100 @@
+package com.codisimus.plugins.phatloots;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+
+/**
+ * A BungeeCordCooldownBus forwards messages to the other servers of a BungeeCord proxy.
+ * Plugin messages travel through the connection of a Player so messages are only
+ * sent while a Player is online and only reach servers which have a Player online
+ *
+ * @author Codisimus
+ */
+public final class BungeeCordCooldownBus implements CooldownBus, PluginMessageListener {
+    private static final String CHANNEL = "BungeeCord";
+    private static final String SUBCHANNEL = "PhatLootsCooldowns";
+    private volatile Receiver receiver;
+
+    public BungeeCordCooldownBus() {
+        Bukkit.getMessenger().registerOutgoingPluginChannel(PhatLoots.plugin, CHANNEL);
+        Bukkit.getMessenger().registerIncomingPluginChannel(PhatLoots.plugin, CHANNEL, this);
+    }
+
+    /**
+     * Asks the proxy to forward the message to every other server
+     *
+     * @param message The encoded loot time change
+     */
+    @Override
+    public void publish(byte[] message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.length + 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF("Forward");
+            out.writeUTF("ALL");
+            out.writeUTF(SUBCHANNEL);
+            out.writeShort(message.length);
+            out.write(message);
+        } catch (IOException ex) {
+            PhatLoots.logger.log(Level.SEVERE, "Failed to encode a cooldown message", ex);
+            return;
+        }
+
+        //Any online Player may carry the message
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            player.sendPluginMessage(PhatLoots.plugin, CHANNEL, bytes.toByteArray());
+            return;
+        }
+    }
+
+    /**
+     * Sets the receiver of messages from other servers
+     *
+     * @param receiver The Receiver of this bus
+     */
+    @Override
+    public void subscribe(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    /**
+     * Unregisters the plugin channels
+     */
+    @Override
+    public void close() {
+        receiver = null;
+        Bukkit.getMessenger().unregisterOutgoingPluginChannel(PhatLoots.plugin, CHANNEL);
+        Bukkit.getMessenger().unregisterIncomingPluginChannel(PhatLoots.plugin, CHANNEL, this);
+    }
+
+    /**
+     * Passes messages which were forwarded by other servers to the receiver
+     *
+     * @param channel The name of the plugin channel
+     * @param player The Player whose connection carried the message
+     * @param message The forwarded plugin message
+     */
+    @Override
+    public void onPluginMessageReceived(String channel, Player player, byte[] message) {
+        Receiver current = receiver;
+        if (!channel.equals(CHANNEL) || current == null) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            if (!in.readUTF().equals(SUBCHANNEL)) {
+                return;
+            }
+            byte[] data = new byte[in.readUnsignedShort()];
+            in.readFully(data);
+            current.receive(data);
+        } catch (IOException ex) {
+            //The message was not one of ours
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.codisimus.plugins.phatloots;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * The ChestRegistry finds PhatLootChests by their location without building Strings or boxing coordinates.
+ * World names are interned as small ints and each World is partitioned by chunk.
+ * Chunks and blocks are keyed by packed long coordinates.
+ * Positions of linked chests (both halves of a double chest) are also kept separately
+ * so that Blocks which are not linked can be rejected without reading their BlockState
+ *
+ * @author Codisimus
+ */
+final class ChestRegistry {
+    private static final HashMap<String, Integer> worldIds = new HashMap<>(); //World name -> World ID
+    private static final ArrayList<LongMap<LongMap<PhatLootChest>>> worlds = new ArrayList<>(); //World ID -> Chunk key -> Block key -> PhatLootChest
+    private static final ArrayList<LongMap<LongMap<PhatLootChest>>> linked = new ArrayList<>(); //World ID -> Chunk key -> Block key -> Linked PhatLootChest
+    private static int size;
+
+    private ChestRegistry() {
+    }
+
+    /**
+     * Returns the ID of the given World, interning it if it is new
+     *
+     * @param world The name of the World
+     * @return The ID of the World
+     */
+    static int internWorld(String world) {
+        Integer id = worldIds.get(world);
+        if (id == null) {
+            id = worlds.size();
+            worldIds.put(world, id);
+            worlds.add(new LongMap<LongMap<PhatLootChest>>());
+            linked.add(new LongMap<LongMap<PhatLootChest>>());
+        }
+        return id;
+    }
+
+    /**
+     * Returns the ID of the given World
+     *
+     * @param world The name of the World
+     * @return The ID of the World or -1 if no chest has been registered within it
+     */
+    static int getWorldId(String world) {
+        Integer id = worldIds.get(world);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the PhatLootChest at the given location
+     *
+     * @param world The ID of the World (or -1)
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @return The PhatLootChest or null if none is registered
+     */
+    static PhatLootChest get(int world, int x, int y, int z) {
+        return world < 0 ? null : find(worlds.get(world), x, y, z);
+    }
+
+    /**
+     * Registers the given PhatLootChest at the given location
+     *
+     * @param world The ID of the World
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @param chest The PhatLootChest to register
+     */
+    static void put(int world, int x, int y, int z, PhatLootChest chest) {
+        if (insert(worlds.get(world), x, y, z, chest) == null) {
+            size++;
+        }
+    }
+
+    /**
+     * Unregisters the PhatLootChest at the given location
+     *
+     * @param world The ID of the World
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @return The PhatLootChest which was removed or null if there was none
+     */
+    static PhatLootChest remove(int world, int x, int y, int z) {
+        PhatLootChest chest = delete(worlds.get(world), x, y, z);
+        if (chest != null) {
+            size--;
+        }
+        return chest;
+    }
+
+    /**
+     * Returns the linked PhatLootChest which covers the given location
+     *
+     * @param world The ID of the World (or -1)
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @return The PhatLootChest or null if the location is not part of a linked chest
+     */
+    static PhatLootChest getLinked(int world, int x, int y, int z) {
+        return world < 0 ? null : find(linked.get(world), x, y, z);
+    }
+
+    /**
+     * Marks the given location as part of a linked PhatLootChest
+     *
+     * @param world The ID of the World
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @param chest The linked PhatLootChest
+     */
+    static void putLinked(int world, int x, int y, int z, PhatLootChest chest) {
+        insert(linked.get(world), x, y, z, chest);
+    }
+
+    /**
+     * Marks the given location as no longer part of a linked PhatLootChest
+     *
+     * @param world The ID of the World
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     */
+    static void removeLinked(int world, int x, int y, int z) {
+        delete(linked.get(world), x, y, z);
+    }
+
+    /**
+     * Adds each PhatLootChest within the given chunk to the given Collection
+     *
+     * @param world The ID of the World (or -1)
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkZ The z-coordinate of the chunk
+     * @param result The Collection to add the PhatLootChests to
+     */
+    static void getChunk(int world, int chunkX, int chunkZ, Collection<? super PhatLootChest> result) {
+        if (world < 0) {
+            return;
+        }
+        LongMap<PhatLootChest> chunk = worlds.get(world).get(chunkKey(chunkX, chunkZ));
+        if (chunk != null) {
+            chunk.addValuesTo(result);
+        }
+    }
+
+    /**
+     * Adds each PhatLootChest within the given radius to the given Collection.
+     * Only the chunks which overlap the radius are looked at
+     * unless there are fewer chunks with PhatLootChests than that (for a very large radius)
+     *
+     * @param world The ID of the World (or -1)
+     * @param x The x-coordinate of the center
+     * @param y The y-coordinate of the center
+     * @param z The z-coordinate of the center
+     * @param radius The maximum distance from the center
+     * @param result The Collection to add the PhatLootChests to
+     */
+    static void getNear(int world, int x, int y, int z, int radius, Collection<? super PhatLootChest> result) {
+        if (world < 0 || radius < 0) {
+            return;
+        }
+        LongMap<LongMap<PhatLootChest>> chunks = worlds.get(world);
+        long minChunkX = ((long) x - radius) >> 4;
+        long maxChunkX = ((long) x + radius) >> 4;
+        long minChunkZ = ((long) z - radius) >> 4;
+        long maxChunkZ = ((long) z + radius) >> 4;
+        ArrayList<LongMap<PhatLootChest>> nearChunks = new ArrayList<>();
+        if ((maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1) > chunks.size()) {
+            //Looking at every populated chunk is cheaper than looking at every chunk within the radius
+            chunks.addValuesTo(nearChunks);
+        } else {
+            for (int chunkX = (int) minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = (int) minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    LongMap<PhatLootChest> chunk = chunks.get(chunkKey(chunkX, chunkZ));
+                    if (chunk != null) {
+                        nearChunks.add(chunk);
+                    }
+                }
+            }
+        }
+
+        long radiusSquared = (long) radius * radius;
+        ArrayList<PhatLootChest> chunkChests = new ArrayList<>();
+        for (LongMap<PhatLootChest> chunk : nearChunks) {
+            chunkChests.clear();
+            chunk.addValuesTo(chunkChests);
+            for (PhatLootChest chest : chunkChests) {
+                long dx = chest.getX() - x;
+                long dy = chest.getY() - y;
+                long dz = chest.getZ() - z;
+                if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                    result.add(chest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds every registered PhatLootChest to the given Collection
+     *
+     * @param result The Collection to add the PhatLootChests to
+     */
+    static void getAll(Collection<? super PhatLootChest> result) {
+        ArrayList<LongMap<PhatLootChest>> chunks = new ArrayList<>();
+        for (LongMap<LongMap<PhatLootChest>> world : worlds) {
+            chunks.clear();
+            world.addValuesTo(chunks);
+            for (LongMap<PhatLootChest> chunk : chunks) {
+                chunk.addValuesTo(result);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of registered PhatLootChests
+     *
+     * @return The number of PhatLootChests
+     */
+    static int size() {
+        return size;
+    }
+
+    /**
+     * Returns the PhatLootChest at the given location of the given index
+     *
+     * @param chunks The index of a World
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @return The PhatLootChest or null if there is none
+     */
+    private static PhatLootChest find(LongMap<LongMap<PhatLootChest>> chunks, int x, int y, int z) {
+        LongMap<PhatLootChest> chunk = chunks.get(chunkKey(x >> 4, z >> 4));
+        return chunk == null ? null : chunk.get(blockKey(x, y, z));
+    }
+
+    /**
+     * Adds the PhatLootChest to the given location of the given index
+     *
+     * @param chunks The index of a World
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @param chest The PhatLootChest to add
+     * @return The PhatLootChest which was replaced or null if there was none
+     */
+    private static PhatLootChest insert(LongMap<LongMap<PhatLootChest>> chunks, int x, int y, int z, PhatLootChest chest) {
+        long chunkKey = chunkKey(x >> 4, z >> 4);
+        LongMap<PhatLootChest> chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            chunk = new LongMap<>();
+            chunks.put(chunkKey, chunk);
+        }
+        return chunk.put(blockKey(x, y, z), chest);
+    }
+
+    /**
+     * Removes the PhatLootChest at the given location of the given index
+     *
+     * @param chunks The index of a World
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @return The PhatLootChest which was removed or null if there was none
+     */
+    private static PhatLootChest delete(LongMap<LongMap<PhatLootChest>> chunks, int x, int y, int z) {
+        long chunkKey = chunkKey(x >> 4, z >> 4);
+        LongMap<PhatLootChest> chunk = chunks.get(chunkKey);
+        if (chunk == null) {
+            return null;
+        }
+        PhatLootChest chest = chunk.remove(blockKey(x, y, z));
+        if (chunk.isEmpty()) {
+            chunks.remove(chunkKey);
+        }
+        return chest;
+    }
+
+    /**
+     * Packs the given chunk coordinates into a single key
+     *
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkZ The z-coordinate of the chunk
+     * @return The key of the chunk
+     */
+    static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Packs the given Block coordinates into a single key.
+     * x and z use 26 bits each (enough for a 30,000,000 block border) and y uses the remaining 12 bits
+     *
+     * @param x The x-coordinate of the Block
+     * @param y The y-coordinate of the Block
+     * @param z The z-coordinate of the Block
+     * @return The key of the Block
+     */
+    static long blockKey(int x, int y, int z) {
+        return (x & 0x3FFFFFFL) << 38 | (z & 0x3FFFFFFL) << 12 | (y & 0xFFFL);
+    }
+
+    /**
+     * A map of long keys to non-null values using open addressing (linear probing)
+     */
+    private static final class LongMap<V> {
+        private static final int MIN_CAPACITY = 8;
+        private long[] keys = new long[MIN_CAPACITY];
+        private Object[] values = new Object[MIN_CAPACITY]; //null marks an empty slot
+        private int size;
+
+        /**
+         * Returns the value of the given key
+         *
+         * @param key The key to look up
+         * @return The value or null if there is none
+         */
+        @SuppressWarnings("unchecked")
+        V get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return (V) values[slot];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Sets the value of the given key
+         *
+         * @param key The key to set
+         * @param value The non-null value
+         * @return The previous value or null if there was none
+         */
+        @SuppressWarnings("unchecked")
+        V put(long key, V value) {
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    V old = (V) values[slot];
+                    values[slot] = value;
+                    return old;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 4 > keys.length * 3) {
+                resize(keys.length * 2);
+            }
+            return null;
+        }
+
+        /**
+         * Removes the given key
+         *
+         * @param key The key to remove
+         * @return The removed value or null if there was none
+         */
+        @SuppressWarnings("unchecked")
+        V remove(long key) {
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    V old = (V) values[slot];
+                    //Shift back any following entries which would no longer be found
+                    int hole = slot;
+                    int next = (slot + 1) & mask;
+                    while (values[next] != null) {
+                        if (((next - slot(keys[next], mask)) & mask) >= ((next - hole) & mask)) {
+                            keys[hole] = keys[next];
+                            values[hole] = values[next];
+                            hole = next;
+                        }
+                        next = (next + 1) & mask;
+                    }
+                    values[hole] = null;
+                    size--;
+                    return old;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Returns true if there are no entries
+         *
+         * @return true if the map is empty
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Returns the number of keys within the map
+         *
+         * @return The number of entries
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Adds each value to the given Collection
+         *
+         * @param result The Collection to add the values to
+         */
+        @SuppressWarnings("unchecked")
+        void addValuesTo(Collection<? super V> result) {
+            for (Object value : values) {
+                if (value != null) {
+                    result.add((V) value);
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = slot(oldKeys[i], mask);
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ hash >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.codisimus.plugins.phatloots;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Links every linkable Block within an area to a PhatLoot as a background job.
+ * Snapshots of a few chunks are taken on the server thread each tick and searched on a fork-join pool,
+ * the found Blocks are then linked on the server thread and the chests are saved once when the scan is done.
+ * A chunk which the scan loads is kept loaded until its Blocks are linked so that it is only loaded once
+ *
+ * @author Codisimus
+ */
+public class ChunkScanner extends BukkitRunnable {
+    public static final int MAX_CHUNKS = 16384; //The most chunks which a single scan may cover
+    private static final int CHUNKS_PER_TICK = 4; //The number of chunks which are snapshot (and linked) each tick
+    private static final int MAX_PENDING = 64; //The most chunks which may be waiting to be linked (and held loaded)
+    private static ForkJoinPool pool;
+    private static ChunkScanner running; //The scan which is in progress if any
+
+    private final CommandSender sender;
+    private final PhatLoot phatLoot;
+    private final World world;
+    private final int minChunkX, minChunkZ, maxChunkX, maxChunkZ;
+    private final boolean[] linkable; //Material ID -> true if the Material is linkable
+    private final int maxHeight;
+    private final ConcurrentLinkedQueue<Result> found = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger(); //The number of snapshots which have not been linked yet
+    private final int chestCount; //The number of chests which were linked before the scan
+    private final long startTime = System.currentTimeMillis();
+    private int nextChunkX, nextChunkZ;
+    private int chunksScanned;
+    private int blocksFound;
+    private boolean cancelled;
+
+    /**
+     * The linkable Blocks which were found within a chunk
+     */
+    private static final class Result {
+        private final int chunkX;
+        private final int chunkZ;
+        private final boolean wasLoaded; //False if the chunk was loaded by the scan
+        private int[] blocks = new int[0]; //[x, y, z, x, y, z...]
+
+        private Result(int chunkX, int chunkZ, boolean wasLoaded) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.wasLoaded = wasLoaded;
+        }
+    }
+
+    /**
+     * Creates a scan of the given area
+     *
+     * @param sender The CommandSender who requested the scan
+     * @param phatLoot The PhatLoot to link the found Blocks to
+     * @param world The World to scan
+     * @param x1 The x-coordinate of one corner of the area
+     * @param z1 The z-coordinate of one corner of the area
+     * @param x2 The x-coordinate of the opposite corner of the area
+     * @param z2 The z-coordinate of the opposite corner of the area
+     */
+    private ChunkScanner(CommandSender sender, PhatLoot phatLoot, World world, int x1, int z1, int x2, int z2) {
+        this.sender = sender;
+        this.phatLoot = phatLoot;
+        this.world = world;
+        minChunkX = Math.min(x1, x2) >> 4;
+        minChunkZ = Math.min(z1, z2) >> 4;
+        maxChunkX = Math.max(x1, x2) >> 4;
+        maxChunkZ = Math.max(z1, z2) >> 4;
+        nextChunkX = minChunkX;
+        nextChunkZ = minChunkZ;
+        maxHeight = world.getMaxHeight();
+        chestCount = phatLoot.getChests().size();
+
+        //Material IDs are checked rather than Materials so that snapshots do not need to be converted
+        int length = 0;
+        for (Material material : PhatLoots.types.keySet()) {
+            length = Math.max(length, material.getId() + 1);
+        }
+        linkable = new boolean[length];
+        for (Material material : PhatLoots.types.keySet()) {
+            linkable[material.getId()] = true;
+        }
+    }
+
+    /**
+     * Starts linking each linkable Block within the given area to the given PhatLoot.
+     * Only chunks which have been generated are scanned.
+     * The area should not cover more than MAX_CHUNKS chunks
+     *
+     * @param sender The CommandSender who requested the scan
+     * @param phatLoot The PhatLoot to link the found Blocks to
+     * @param world The World to scan
+     * @param x1 The x-coordinate of one corner of the area
+     * @param z1 The z-coordinate of one corner of the area
+     * @param x2 The x-coordinate of the opposite corner of the area
+     * @param z2 The z-coordinate of the opposite corner of the area
+     * @return false if another scan is already in progress
+     */
+    public static boolean scan(CommandSender sender, PhatLoot phatLoot, World world, int x1, int z1, int x2, int z2) {
+        if (running != null) {
+            return false;
+        }
+        running = new ChunkScanner(sender, phatLoot, world, x1, z1, x2, z2);
+        running.runTaskTimer(PhatLoots.plugin, 1, 1);
+        return true;
+    }
+
+    /**
+     * Stops the scan which is in progress.
+     * The Blocks which have already been linked stay linked
+     *
+     * @return false if there is no scan in progress
+     */
+    public static boolean cancelScan() {
+        if (running == null || running.cancelled) {
+            return false;
+        }
+        running.cancelled = true;
+        return true;
+    }
+
+    /**
+     * Links the Blocks of searched chunks and snapshots the next few chunks
+     */
+    @Override
+    public void run() {
+        //Link the Blocks which have been found so far
+        Result result;
+        for (int i = 0; (i < CHUNKS_PER_TICK || cancelled) && (result = found.poll()) != null; i++) {
+            link(result);
+        }
+
+        if (!cancelled && nextChunkX <= maxChunkX) {
+            //Wait for the pending chunks before loading more of them
+            for (int i = 0; i < CHUNKS_PER_TICK && nextChunkX <= maxChunkX && pending.get() < MAX_PENDING; i++) {
+                snapshot(nextChunkX, nextChunkZ);
+                if (++nextChunkZ > maxChunkZ) {
+                    nextChunkZ = minChunkZ;
+                    nextChunkX++;
+                }
+            }
+        } else if (pending.get() == 0) {
+            finish();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the given chunk and searches it on the fork-join pool.
+     * A chunk which is not loaded is loaded for the snapshot and is allowed to unload once its Blocks are linked
+     *
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkZ The z-coordinate of the chunk
+     */
+    private void snapshot(final int chunkX, final int chunkZ) {
+        boolean loaded = world.isChunkLoaded(chunkX, chunkZ);
+        if (!loaded && !world.loadChunk(chunkX, chunkZ, false)) {
+            //The chunk has not been generated
+            return;
+        }
+        final ChunkSnapshot snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+        chunksScanned++;
+
+        final Result result = new Result(chunkX, chunkZ, loaded);
+        pending.incrementAndGet();
+        getPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    search(snapshot, result);
+                } finally {
+                    //The result is always handed back so that the chunk is allowed to unload
+                    found.add(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds each linkable Block within the given snapshot.
+     * This is called from the fork-join pool
+     *
+     * @param snapshot The ChunkSnapshot to search
+     * @param result The Result to add the found Blocks to
+     */
+    private void search(ChunkSnapshot snapshot, Result result) {
+        int[] blocks = new int[30];
+        int size = 0;
+        for (int section = 0; section < maxHeight >> 4; section++) {
+            //Empty sections contain only air
+            if (snapshot.isSectionEmpty(section)) {
+                continue;
+            }
+            for (int y = section << 4; y < (section + 1) << 4; y++) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        int id = snapshot.getBlockTypeId(x, y, z);
+                        if (id < linkable.length && linkable[id]) {
+                            if (size + 3 > blocks.length) {
+                                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                            }
+                            blocks[size++] = (result.chunkX << 4) + x;
+                            blocks[size++] = y;
+                            blocks[size++] = (result.chunkZ << 4) + z;
+                        }
+                    }
+                }
+            }
+        }
+        result.blocks = Arrays.copyOf(blocks, size);
+    }
+
+    /**
+     * Links the Blocks which were found within a chunk to the PhatLoot and lets the chunk unload if the scan loaded it
+     *
+     * @param result The Blocks which were found within the chunk
+     */
+    private void link(Result result) {
+        pending.decrementAndGet();
+        boolean wasLoaded = result.wasLoaded;
+        if (!cancelled && result.blocks.length > 0) {
+            //The chunk is normally still loaded but the server may have unloaded it in the meantime
+            if (!world.isChunkLoaded(result.chunkX, result.chunkZ)) {
+                wasLoaded = false;
+                if (!world.loadChunk(result.chunkX, result.chunkZ, false)) {
+                    return;
+                }
+            }
+            int[] blocks = result.blocks;
+            for (int i = 0; i < blocks.length; i += 3) {
+                Block block = world.getBlockAt(blocks[i], blocks[i + 1], blocks[i + 2]);
+                //The Block may have changed since the snapshot was taken
+                if (PhatLootsUtil.isLinkableType(block)) {
+                    blocksFound++;
+                    phatLoot.addChest(block);
+                }
+            }
+        }
+        if (!wasLoaded) {
+            world.unloadChunkRequest(result.chunkX, result.chunkZ);
+        }
+    }
+
+    /**
+     * Saves the linked chests and reports the results of the scan
+     */
+    private void finish() {
+        //Stop the timer
+        cancel();
+        running = null;
+        int linked = phatLoot.getChests().size() - chestCount;
+        if (linked > 0) {
+            phatLoot.saveChests();
+        }
+        sender.sendMessage((cancelled ? "§5Cancelled the scan after scanning §6" : "§5Scanned §6") + chunksScanned + "§5 chunks in §6"
+                + (System.currentTimeMillis() - startTime) / 1000 + "s§5, found §6" + blocksFound
+                + "§5 linkable Blocks and linked §6" + linked + "§5 new chests to PhatLoot §6" + phatLoot.name);
+    }
+
+    /**
+     * Stops the scan which is in progress and the fork-join pool.
+     * The chests which were already linked are saved and the chunks which the scan loaded are allowed to unload
+     */
+    static void shutdown() {
+        ChunkScanner scan = running;
+        if (scan != null) {
+            scan.cancelled = true;
+        }
+
+        ForkJoinPool service;
+        synchronized (ChunkScanner.class) {
+            service = pool;
+            pool = null;
+        }
+        if (service != null) {
+            //Let the searches which are queued finish so that each of their chunks is handed back
+            service.shutdown();
+            try {
+                if (!service.awaitTermination(10, TimeUnit.SECONDS)) {
+                    PhatLoots.logger.warning("Timed out while stopping the scan");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (scan != null) {
+            Result result;
+            while ((result = scan.found.poll()) != null) {
+                scan.link(result);
+            }
+            scan.finish();
+        }
+    }
+
+    /**
+     * Returns the fork-join pool which snapshots are searched on
+     *
+     * @return The ForkJoinPool
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+}
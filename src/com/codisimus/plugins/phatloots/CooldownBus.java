@@ -0,0 +1,41 @@
+package com.codisimus.plugins.phatloots;
+
+/**
+ * A CooldownBus carries loot time changes between servers which share PhatLoots.
+ * Messages are opaque to the bus and are written and read by the CooldownCoordinator
+ *
+ * @author Codisimus
+ */
+public interface CooldownBus {
+    /**
+     * Sends a message to every other server.
+     * This is called from the main thread so it must not wait for the network
+     *
+     * @param message The encoded loot time change
+     */
+    void publish(byte[] message);
+
+    /**
+     * Sets the receiver of messages from other servers
+     *
+     * @param receiver The Receiver which may be called from any thread
+     */
+    void subscribe(Receiver receiver);
+
+    /**
+     * Stops sending and receiving messages
+     */
+    void close();
+
+    /**
+     * Receives the messages which are published by other servers
+     */
+    interface Receiver {
+        /**
+         * Called when a message arrives (possibly from another thread)
+         *
+         * @param message The encoded loot time change
+         */
+        void receive(byte[] message);
+    }
+}
@@ -0,0 +1,198 @@
+package com.codisimus.plugins.phatloots;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+/**
+ * The CooldownCoordinator shares loot time changes with other servers through a CooldownBus.
+ * Each server keeps its own loot times as a local cache which is always read without waiting for the network.
+ * Changes are published as they happen and changes from other servers are queued
+ * until the main thread applies them (before a loot time is read and on every tick)
+ *
+ * @author Codisimus
+ */
+public final class CooldownCoordinator implements CooldownBus.Receiver {
+    private static final byte LOOT = 0;
+    private static final byte RESET_CHEST = 1;
+    private static final byte RESET_WORLD = 2;
+    private static final byte RESET_USER = 3;
+    private static final byte RESET_ALL = 4;
+
+    private final CooldownBus bus;
+    private final long serverId = new Random().nextLong(); //Identifies messages which this server published
+    private final ConcurrentLinkedQueue<byte[]> inbox = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a coordinator which shares changes through the given bus
+     *
+     * @param bus The CooldownBus or null if loot times are not shared
+     */
+    public CooldownCoordinator(CooldownBus bus) {
+        this.bus = bus;
+        if (bus != null) {
+            bus.subscribe(this);
+        }
+    }
+
+    /**
+     * Returns true if loot times are shared with other servers
+     *
+     * @return true if there is a CooldownBus
+     */
+    public boolean isShared() {
+        return bus != null;
+    }
+
+    /**
+     * Publishes that a loot time was set
+     *
+     * @param phatLoot The PhatLoot which was looted
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @param time The time in milliseconds
+     */
+    void loot(PhatLoot phatLoot, int chest, int user, long time) {
+        publish(LOOT, phatLoot, CooldownStore.getChestName(chest), CooldownStore.getUserName(user), time);
+    }
+
+    /**
+     * Publishes that every loot time of a chest was reset
+     *
+     * @param phatLoot The PhatLoot which was reset
+     * @param chest The ID of the chest
+     */
+    void resetChest(PhatLoot phatLoot, int chest) {
+        publish(RESET_CHEST, phatLoot, CooldownStore.getChestName(chest), null, 0);
+    }
+
+    /**
+     * Publishes that the global loot times of a World were reset
+     *
+     * @param phatLoot The PhatLoot which was reset
+     * @param world The name of the World
+     */
+    void resetWorld(PhatLoot phatLoot, String world) {
+        publish(RESET_WORLD, phatLoot, world, null, 0);
+    }
+
+    /**
+     * Publishes that every loot time of a user was reset
+     *
+     * @param phatLoot The PhatLoot which was reset
+     * @param user The ID of the user
+     */
+    void resetUser(PhatLoot phatLoot, int user) {
+        publish(RESET_USER, phatLoot, null, CooldownStore.getUserName(user), 0);
+    }
+
+    /**
+     * Publishes that every loot time of a PhatLoot was reset
+     *
+     * @param phatLoot The PhatLoot which was reset
+     */
+    void resetAll(PhatLoot phatLoot) {
+        publish(RESET_ALL, phatLoot, null, null, 0);
+    }
+
+    /**
+     * Queues a message from another server to be applied on the main thread
+     *
+     * @param message The encoded loot time change
+     */
+    @Override
+    public void receive(byte[] message) {
+        inbox.add(message);
+    }
+
+    /**
+     * Applies each queued change from other servers to the local loot times.
+     * This must be called from the main thread
+     */
+    public void applyPending() {
+        byte[] message;
+        while ((message = inbox.poll()) != null) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+                if (in.readLong() == serverId) {
+                    //The message was published by this server
+                    continue;
+                }
+                byte type = in.readByte();
+                PhatLoot phatLoot = PhatLoots.getPhatLoot(in.readUTF());
+                String chest = in.readUTF();
+                String user = in.readUTF();
+                long time = in.readLong();
+                if (phatLoot == null) {
+                    //The PhatLoot does not exist on this server
+                    continue;
+                }
+
+                int chestId = chest.isEmpty() ? CooldownStore.NO_CHEST : CooldownStore.internChest(chest);
+                switch (type) {
+                case LOOT:
+                    phatLoot.storeLootTime(chestId, CooldownStore.internUser(user), time);
+                    break;
+                case RESET_CHEST:
+                    phatLoot.removeLootTimes(chestId);
+                    break;
+                case RESET_WORLD:
+                    phatLoot.removeLootTimes(chest, CooldownStore.GLOBAL);
+                    break;
+                case RESET_USER:
+                    phatLoot.removeUserLootTimes(CooldownStore.internUser(user));
+                    break;
+                case RESET_ALL:
+                    phatLoot.clearLootTimes();
+                    break;
+                default:
+                    PhatLoots.logger.warning("Unknown cooldown message type: " + type);
+                }
+            } catch (IOException ex) {
+                PhatLoots.logger.log(Level.WARNING, "Discarded an invalid cooldown message", ex);
+            }
+        }
+    }
+
+    /**
+     * Applies any queued changes and closes the bus
+     */
+    public void close() {
+        if (bus != null) {
+            bus.close();
+        }
+        applyPending();
+    }
+
+    /**
+     * Encodes a change and hands it to the bus
+     *
+     * @param type The type of the change
+     * @param phatLoot The PhatLoot whose loot times changed
+     * @param chest The name of the chest or World (null if it does not apply)
+     * @param user The name of the user (null if it does not apply)
+     * @param time The loot time in milliseconds
+     */
+    private void publish(byte type, PhatLoot phatLoot, String chest, String user, long time) {
+        if (bus == null) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(serverId);
+            out.writeByte(type);
+            out.writeUTF(phatLoot.name);
+            out.writeUTF(chest == null ? "" : chest);
+            out.writeUTF(user == null ? "" : user);
+            out.writeLong(time);
+        } catch (IOException ex) {
+            PhatLoots.logger.log(Level.SEVERE, "Failed to encode a cooldown message", ex);
+            return;
+        }
+        bus.publish(bytes.toByteArray());
+    }
+}
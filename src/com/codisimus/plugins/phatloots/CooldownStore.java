@@ -0,0 +1,972 @@
+package com.codisimus.plugins.phatloots;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A CooldownStore holds the loot times of a PhatLoot.
+ * Chests and users are interned to int IDs which are packed together into a single long key.
+ * Keys and times are kept in parallel primitive arrays using open addressing (linear probing)
+ * so that an entry costs 16 bytes rather than a Hashtable entry with two Strings.
+ * Every PhatLoot has a single reset time so loot times expire in the order that they were set.
+ * A min-heap of loot times lets expired entries be removed without looking at any others.
+ * Each chest and user also indexes its own entries so that resetting one does not scan the rest.
+ * The file format is the same as the Properties file which was used previously
+ *
+ * @author Codisimus
+ */
+public final class CooldownStore implements CooldownTable {
+    public static final int NO_CHEST = 0; //The chest ID of loot times which are not tied to a chest
+    public static final int GLOBAL = 0; //The user ID of global loot times
+    public static final long ABSENT = Long.MIN_VALUE; //Returned when there is no loot time
+    private static final long EMPTY = -1L; //Marks an unused slot (IDs are never negative)
+    private static final int MIN_CAPACITY = 16;
+
+    private static final HashMap<String, Integer> chestIds = new HashMap<>();
+    private static final ArrayList<String> chestNames = new ArrayList<>();
+    private static final HashMap<String, Integer> userIds = new HashMap<>();
+    private static final ArrayList<String> userNames = new ArrayList<>();
+    private static final HashMap<String, IntSet> worldChests = new HashMap<>(); //World name -> chest IDs
+    static {
+        chestNames.add(null);
+        userIds.put("global", GLOBAL);
+        userNames.add("global");
+    }
+
+    private long[] keys;
+    private long[] times;
+    private int mask;
+    private int size;
+    private long[] heapTimes = new long[MIN_CAPACITY]; //Min-heap of loot times (may include stale entries)
+    private long[] heapKeys = new long[MIN_CAPACITY];
+    private int heapSize;
+    private final HashMap<Integer, IntSet> chestUsers = new HashMap<>(); //Chest ID -> user IDs
+    private final HashMap<Integer, IntSet> userChests = new HashMap<>(); //User ID -> chest IDs
+
+    /**
+     * Constructs a new empty CooldownStore
+     */
+    public CooldownStore() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Returns the ID of the given chest, creating one if it is new
+     *
+     * @param chest The String representation of a PhatLootChest (world'x'y'z)
+     * @return The ID of the chest
+     */
+    public static synchronized int internChest(String chest) {
+        Integer id = chestIds.get(chest);
+        if (id == null) {
+            id = chestNames.size();
+            chestIds.put(chest, id);
+            chestNames.add(chest);
+            //Index the chest by the World which it is in
+            String world = chest.substring(0, Math.max(chest.indexOf('\''), 0));
+            IntSet chests = worldChests.get(world);
+            if (chests == null) {
+                chests = new IntSet();
+                worldChests.put(world, chests);
+            }
+            chests.add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the ID of the given user, creating one if it is new
+     *
+     * @param user The UUID of a Player or 'global'
+     * @return The ID of the user
+     */
+    public static synchronized int internUser(String user) {
+        Integer id = userIds.get(user);
+        if (id == null) {
+            id = userNames.size();
+            userIds.put(user, id);
+            userNames.add(user);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the chest which the given ID was interned from
+     *
+     * @param id The ID of the chest
+     * @return The String representation of the PhatLootChest or null for NO_CHEST
+     */
+    public static synchronized String getChestName(int id) {
+        return chestNames.get(id);
+    }
+
+    /**
+     * Returns the user which the given ID was interned from
+     *
+     * @param id The ID of the user
+     * @return The UUID of the Player or 'global'
+     */
+    public static synchronized String getUserName(int id) {
+        return userNames.get(id);
+    }
+
+    /**
+     * Returns the IDs of the given chests which are within the given World.
+     * Only the smaller of the two sets is iterated
+     *
+     * @param world The name of the World
+     * @param chests The chest IDs to filter
+     * @return The chest IDs (empty if there are none)
+     */
+    private static synchronized int[] getWorldChests(String world, IntSet chests) {
+        IntSet inWorld = worldChests.get(world);
+        if (inWorld == null) {
+            return new int[0];
+        }
+        IntSet smaller = chests.size <= inWorld.size ? chests : inWorld;
+        IntSet larger = smaller == chests ? inWorld : chests;
+        int[] ids = smaller.toArray();
+        int count = 0;
+        for (int id : ids) {
+            if (larger.contains(id)) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Returns the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @return The time in milliseconds or ABSENT if there is none
+     */
+    @Override
+    public synchronized long get(int chest, int user) {
+        int slot = find(pack(chest, user));
+        return slot < 0 ? ABSENT : times[slot];
+    }
+
+    /**
+     * Sets the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @param time The time in milliseconds
+     */
+    @Override
+    public synchronized void put(int chest, int user, long time) {
+        long key = pack(chest, user);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                if (times[slot] != time) {
+                    times[slot] = time;
+                    push(time, key);
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        times[slot] = time;
+        push(time, key);
+        index(chestUsers, chest, user);
+        index(userChests, user, chest);
+        //Keep the table at most 3/4 full
+        if (++size > (keys.length >>> 2) * 3) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Removes the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @return true if there was a loot time to remove
+     */
+    @Override
+    public synchronized boolean remove(int chest, int user) {
+        int slot = find(pack(chest, user));
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Removes every loot time of the given chest
+     *
+     * @param chest The ID of the chest
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeChest(int chest) {
+        return removeOlderThan(chest, Long.MAX_VALUE);
+    }
+
+    /**
+     * Removes each loot time which is earlier than the given time
+     *
+     * @param chest The ID of the chest or -1 to check every chest
+     * @param time The earliest loot time which will be kept
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeOlderThan(int chest, long time) {
+        int removed = 0;
+        if (chest >= 0) {
+            //Only look at the entries of the chest
+            IntSet users = chestUsers.get(chest);
+            if (users != null) {
+                for (int user : users.toArray()) {
+                    int slot = find(pack(chest, user));
+                    if (times[slot] < time) {
+                        removeSlot(slot);
+                        removed++;
+                    }
+                }
+            }
+            shrink();
+            compactHeap();
+            return removed;
+        }
+
+        int slot = 0;
+        while (slot < keys.length) {
+            long key = keys[slot];
+            if (key != EMPTY && times[slot] < time) {
+                //Another entry may be shifted into this slot so check it again
+                removeSlot(slot);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        shrink();
+        compactHeap();
+        return removed;
+    }
+
+    /**
+     * Removes every loot time of the given user
+     *
+     * @param user The ID of the user
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeUser(int user) {
+        IntSet chests = userChests.get(user);
+        if (chests == null) {
+            return 0;
+        }
+        int[] ids = chests.toArray();
+        for (int chest : ids) {
+            removeSlot(find(pack(chest, user)));
+        }
+        shrink();
+        compactHeap();
+        return ids.length;
+    }
+
+    /**
+     * Removes the loot times of the given user for every chest within the given World
+     *
+     * @param world The name of the World
+     * @param user The ID of the user
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeWorld(String world, int user) {
+        IntSet chests = userChests.get(user);
+        if (chests == null) {
+            return 0;
+        }
+        int[] ids = getWorldChests(world, chests);
+        for (int chest : ids) {
+            removeSlot(find(pack(chest, user)));
+        }
+        shrink();
+        compactHeap();
+        return ids.length;
+    }
+
+    /**
+     * Returns the loot time of each chest for the given user
+     *
+     * @param user The ID of the user
+     * @return The map of chest IDs to loot times (NO_CHEST for loot times which are not tied to a chest)
+     */
+    @Override
+    public synchronized Map<Integer, Long> getUserTimes(int user) {
+        HashMap<Integer, Long> userTimes = new HashMap<>();
+        IntSet chests = userChests.get(user);
+        if (chests != null) {
+            for (int chest : chests.toArray()) {
+                userTimes.put(chest, times[find(pack(chest, user))]);
+            }
+        }
+        return userTimes;
+    }
+
+    /**
+     * Removes each loot time which is earlier than the given time.
+     * Only the expired entries are looked at
+     *
+     * @param time The earliest loot time which will be kept
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeExpired(long time) {
+        int removed = 0;
+        while (heapSize > 0 && heapTimes[0] < time) {
+            long key = heapKeys[0];
+            long heapTime = heapTimes[0];
+            pop();
+            //Skip entries which were since removed or given a new time
+            int slot = find(key);
+            if (slot >= 0 && times[slot] == heapTime) {
+                removeSlot(slot);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            shrink();
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every loot time
+     */
+    @Override
+    public synchronized void clear() {
+        if (size == 0 && heapSize == 0) {
+            return;
+        }
+        allocate(MIN_CAPACITY);
+        size = 0;
+        heapTimes = new long[MIN_CAPACITY];
+        heapKeys = new long[MIN_CAPACITY];
+        heapSize = 0;
+        chestUsers.clear();
+        userChests.clear();
+    }
+
+    /**
+     * Returns the number of loot times
+     *
+     * @return The number of entries
+     */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if there are no loot times
+     *
+     * @return true if the store is empty
+     */
+    @Override
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Reads loot times from the given Properties file and adds them to this store
+     *
+     * @param in The stream of the Properties file
+     * @throws IOException if the stream cannot be read
+     */
+    @Override
+    public void load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        synchronized (this) {
+            for (String key : properties.stringPropertyNames()) {
+                long time;
+                try {
+                    time = Long.parseLong(properties.getProperty(key));
+                } catch (NumberFormatException notLong) {
+                    PhatLoots.logger.severe("Fixed corrupted time value!");
+                    time = 0;
+                }
+                //The key is either user or world'x'y'z'user
+                int split = key.lastIndexOf('\'');
+                int chest = split < 0 ? NO_CHEST : internChest(key.substring(0, split));
+                int user = internUser(key.substring(split + 1));
+                put(chest, user, time);
+            }
+        }
+    }
+
+    /**
+     * Writes every loot time in the format of a Properties file
+     *
+     * @param out The stream to write to
+     * @throws IOException if the stream cannot be written to
+     */
+    public synchronized void store(OutputStream out) throws IOException {
+        store(keys, times, out);
+    }
+
+    /**
+     * Returns a copy of every loot time which may be written from another thread
+     *
+     * @return The Snapshot of this store
+     */
+    @Override
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(keys.clone(), times.clone(), size);
+    }
+
+    /**
+     * Returns a Snapshot of the given loot times
+     *
+     * @param chests The ID of the chest of each loot time
+     * @param users The ID of the user of each loot time
+     * @param times The loot times
+     * @param size The number of loot times in the arrays
+     * @return The Snapshot of the loot times
+     */
+    static Snapshot snapshot(int[] chests, int[] users, long[] times, int size) {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = pack(chests[i], users[i]);
+        }
+        return new Snapshot(keys, Arrays.copyOf(times, size), size);
+    }
+
+    /**
+     * Adds every loot time of one table to another
+     *
+     * @param from The table to copy from
+     * @param to The table to copy to
+     */
+    static void copy(CooldownTable from, CooldownTable to) {
+        Snapshot snapshot = from.snapshot();
+        for (int slot = 0; slot < snapshot.getCapacity(); slot++) {
+            long time = snapshot.getTime(slot);
+            if (time != ABSENT) {
+                to.put(snapshot.getChest(slot), snapshot.getUser(slot), time);
+            }
+        }
+    }
+
+    /**
+     * Writes the given loot times in the format of a Properties file
+     *
+     * @param keys The packed keys of the table
+     * @param times The loot times of the table
+     * @param out The stream to write to
+     * @throws IOException if the stream cannot be written to
+     */
+    private static void store(long[] keys, long[] times, OutputStream out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, "ISO-8859-1"));
+        StringBuilder sb = new StringBuilder();
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key == EMPTY) {
+                continue;
+            }
+            sb.setLength(0);
+            String chest = getChestName(chestOf(key));
+            if (chest != null) {
+                escape(chest, sb);
+                sb.append('\'');
+            }
+            escape(getUserName(userOf(key)), sb);
+            sb.append('=').append(times[slot]);
+            writer.write(sb.toString());
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Escapes the given key the same way that Properties.store does
+     *
+     * @param string The key to escape
+     * @param sb The StringBuilder to append the escaped key to
+     */
+    private static void escape(String string, StringBuilder sb) {
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+            case ' ': case '=': case ':': case '#': case '!': case '\\':
+                sb.append('\\').append(c);
+                break;
+            case '\t': sb.append("\\t"); break;
+            case '\n': sb.append("\\n"); break;
+            case '\r': sb.append("\\r"); break;
+            case '\f': sb.append("\\f"); break;
+            default:
+                if (c < 0x20 || c > 0x7e) {
+                    sb.append(String.format("\\u%04X", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs the given IDs into a single key
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @return The chest ID in the high bits and the user ID in the low bits
+     */
+    private static long pack(int chest, int user) {
+        return ((long) chest << 32) | (user & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the chest ID of the given key
+     *
+     * @param key The packed key
+     * @return The ID of the chest
+     */
+    private static int chestOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    /**
+     * Returns the user ID of the given key
+     *
+     * @param key The packed key
+     * @return The ID of the user
+     */
+    private static int userOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Returns the preferred slot of the given key
+     *
+     * @param key The packed key
+     * @return The index which probing begins at
+     */
+    private int slot(long key) {
+        //Scramble the bits so that neighboring IDs do not cluster
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (key ^ (key >>> 31)) & mask;
+    }
+
+    /**
+     * Returns the slot which holds the given key
+     *
+     * @param key The packed key
+     * @return The index of the key or -1 if it is not present
+     */
+    private int find(long key) {
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties the given slot and shifts back any entries which probed past it
+     *
+     * @param slot The index of the entry to remove
+     */
+    private void removeSlot(int slot) {
+        size--;
+        unindex(chestUsers, chestOf(keys[slot]), userOf(keys[slot]));
+        unindex(userChests, userOf(keys[slot]), chestOf(keys[slot]));
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int preferred = slot(keys[next]);
+            //Move the entry if the hole lies between its preferred slot and its current slot
+            if (((next - preferred) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                times[hole] = times[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+    }
+
+    /**
+     * Adds the given value to the set of the given ID
+     *
+     * @param index The secondary index
+     * @param id The chest or user ID
+     * @param value The user or chest ID which has a loot time
+     */
+    private static void index(HashMap<Integer, IntSet> index, int id, int value) {
+        IntSet set = index.get(id);
+        if (set == null) {
+            set = new IntSet();
+            index.put(id, set);
+        }
+        set.add(value);
+    }
+
+    /**
+     * Removes the given value from the set of the given ID
+     *
+     * @param index The secondary index
+     * @param id The chest or user ID
+     * @param value The user or chest ID which no longer has a loot time
+     */
+    private static void unindex(HashMap<Integer, IntSet> index, int id, int value) {
+        IntSet set = index.get(id);
+        if (set != null && set.remove(value) && set.isEmpty()) {
+            index.remove(id);
+        }
+    }
+
+    /**
+     * Adds the given loot time to the heap
+     *
+     * @param time The loot time
+     * @param key The packed key
+     */
+    private void push(long time, long key) {
+        if (heapSize == heapTimes.length) {
+            //Drop stale entries and make room
+            compactHeap();
+        }
+        int child = heapSize++;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (heapTimes[parent] <= time) {
+                break;
+            }
+            heapTimes[child] = heapTimes[parent];
+            heapKeys[child] = heapKeys[parent];
+            child = parent;
+        }
+        heapTimes[child] = time;
+        heapKeys[child] = key;
+    }
+
+    /**
+     * Removes the earliest loot time from the heap
+     */
+    private void pop() {
+        heapSize--;
+        if (heapSize > 0) {
+            siftDown(0, heapTimes[heapSize], heapKeys[heapSize]);
+        }
+    }
+
+    /**
+     * Places the given entry at or below the given index of the heap
+     *
+     * @param index The index of the hole in the heap
+     * @param time The loot time to place
+     * @param key The packed key to place
+     */
+    private void siftDown(int index, long time, long key) {
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            if (child + 1 < heapSize && heapTimes[child + 1] < heapTimes[child]) {
+                child++;
+            }
+            if (time <= heapTimes[child]) {
+                break;
+            }
+            heapTimes[index] = heapTimes[child];
+            heapKeys[index] = heapKeys[child];
+            index = child;
+        }
+        heapTimes[index] = time;
+        heapKeys[index] = key;
+    }
+
+    /**
+     * Rebuilds the heap from the table if it is full or holds many stale entries
+     */
+    private void compactHeap() {
+        if (heapSize <= (size << 1) + MIN_CAPACITY && heapSize < heapTimes.length) {
+            return;
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < size + (size >>> 1)) {
+            capacity <<= 1;
+        }
+        heapTimes = new long[capacity];
+        heapKeys = new long[capacity];
+        heapSize = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                heapTimes[heapSize] = times[slot];
+                heapKeys[heapSize] = keys[slot];
+                heapSize++;
+            }
+        }
+        for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, heapTimes[i], heapKeys[i]);
+        }
+    }
+
+    /**
+     * Shrinks the table after many entries have been removed
+     */
+    private void shrink() {
+        int capacity = keys.length;
+        while (capacity > MIN_CAPACITY && size < (capacity >>> 3)) {
+            capacity >>>= 1;
+        }
+        if (capacity != keys.length) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Moves every entry into a table of the given capacity
+     *
+     * @param capacity The new capacity which must be a power of two
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldTimes = times;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = slot(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                times[slot] = oldTimes[i];
+            }
+        }
+    }
+
+    /**
+     * Replaces the table with an empty one of the given capacity
+     *
+     * @param capacity The capacity which must be a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        times = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    /**
+     * A copy of the loot times of a CooldownStore at a single moment
+     */
+    public static final class Snapshot {
+        private final long[] keys;
+        private final long[] times;
+        private final int size;
+
+        private Snapshot(long[] keys, long[] times, int size) {
+            this.keys = keys;
+            this.times = times;
+            this.size = size;
+        }
+
+        /**
+         * Returns true if there were no loot times
+         *
+         * @return true if the snapshot is empty
+         */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Writes every loot time in the format of a Properties file
+         *
+         * @param out The stream to write to
+         * @throws IOException if the stream cannot be written to
+         */
+        public void store(OutputStream out) throws IOException {
+            CooldownStore.store(keys, times, out);
+        }
+
+        /**
+         * Returns the number of slots in the snapshot (empty slots included)
+         *
+         * @return The capacity of the copied table
+         */
+        public int getCapacity() {
+            return keys.length;
+        }
+
+        /**
+         * Returns the loot time in the given slot
+         *
+         * @param slot The index of the slot
+         * @return The time in milliseconds or ABSENT if the slot is empty
+         */
+        public long getTime(int slot) {
+            return keys[slot] == EMPTY ? ABSENT : times[slot];
+        }
+
+        /**
+         * Returns the chest of the loot time in the given slot
+         *
+         * @param slot The index of a slot which is not empty
+         * @return The ID of the chest
+         */
+        public int getChest(int slot) {
+            return chestOf(keys[slot]);
+        }
+
+        /**
+         * Returns the user of the loot time in the given slot
+         *
+         * @param slot The index of a slot which is not empty
+         * @return The ID of the user
+         */
+        public int getUser(int slot) {
+            return userOf(keys[slot]);
+        }
+    }
+
+    /**
+     * A set of non-negative ints using open addressing
+     */
+    private static final class IntSet {
+        private int[] table = new int[4];
+        private int size;
+
+        private IntSet() {
+            Arrays.fill(table, -1);
+        }
+
+        /**
+         * Adds the given value to the set
+         *
+         * @param value The non-negative value to add
+         */
+        private void add(int value) {
+            int mask = table.length - 1;
+            int slot = (value * 0x9E3779B9) & mask;
+            while (table[slot] != -1) {
+                if (table[slot] == value) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+            //Keep the table at most half full
+            if (++size > table.length >>> 1) {
+                resize(table.length << 1);
+            }
+        }
+
+        /**
+         * Removes the given value from the set
+         *
+         * @param value The value to remove
+         * @return true if the value was in the set
+         */
+        private boolean remove(int value) {
+            int mask = table.length - 1;
+            int slot = (value * 0x9E3779B9) & mask;
+            while (table[slot] != value) {
+                if (table[slot] == -1) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            //Shift back any values which probed past the removed one
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (table[next] != -1) {
+                int preferred = (table[next] * 0x9E3779B9) & mask;
+                if (((next - preferred) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            table[hole] = -1;
+            size--;
+            if (table.length > 4 && size < table.length >>> 3) {
+                resize(table.length >>> 1);
+            }
+            return true;
+        }
+
+        /**
+         * Returns true if the given value is in the set
+         *
+         * @param value The value to look for
+         * @return true if the set contains the value
+         */
+        private boolean contains(int value) {
+            int mask = table.length - 1;
+            int slot = (value * 0x9E3779B9) & mask;
+            while (table[slot] != -1) {
+                if (table[slot] == value) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        /**
+         * Returns true if the set has no values
+         *
+         * @return true if the set is empty
+         */
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Returns a copy of the values of the set
+         *
+         * @return The values in no particular order
+         */
+        private int[] toArray() {
+            int[] values = new int[size];
+            int i = 0;
+            for (int value : table) {
+                if (value != -1) {
+                    values[i++] = value;
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Moves every value into a table of the given capacity
+         *
+         * @param capacity The new capacity which must be a power of two
+         */
+        private void resize(int capacity) {
+            int[] old = table;
+            table = new int[capacity];
+            Arrays.fill(table, -1);
+            int mask = capacity - 1;
+            for (int value : old) {
+                if (value != -1) {
+                    int slot = (value * 0x9E3779B9) & mask;
+                    while (table[slot] != -1) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = value;
+                }
+            }
+        }
+    }
+}
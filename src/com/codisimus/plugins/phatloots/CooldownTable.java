@@ -0,0 +1,126 @@
+package com.codisimus.plugins.phatloots;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * A CooldownTable holds the loot times of a PhatLoot.
+ * Chests and users are identified by the IDs which CooldownStore interned them as.
+ * CooldownStore keeps the loot times on the heap while MappedCooldownStore keeps them in a memory-mapped file
+ *
+ * @author Codisimus
+ */
+public interface CooldownTable {
+    /**
+     * Returns the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @return The time in milliseconds or ABSENT if there is none
+     */
+    long get(int chest, int user);
+
+    /**
+     * Sets the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @param time The time in milliseconds
+     */
+    void put(int chest, int user, long time);
+
+    /**
+     * Removes the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @return true if there was a loot time to remove
+     */
+    boolean remove(int chest, int user);
+
+    /**
+     * Removes every loot time of the given chest
+     *
+     * @param chest The ID of the chest
+     * @return The number of loot times which were removed
+     */
+    int removeChest(int chest);
+
+    /**
+     * Removes each loot time which is earlier than the given time
+     *
+     * @param chest The ID of the chest or -1 to check every chest
+     * @param time The earliest loot time which will be kept
+     * @return The number of loot times which were removed
+     */
+    int removeOlderThan(int chest, long time);
+
+    /**
+     * Removes every loot time of the given user
+     *
+     * @param user The ID of the user
+     * @return The number of loot times which were removed
+     */
+    int removeUser(int user);
+
+    /**
+     * Removes the loot times of the given user for every chest within the given World
+     *
+     * @param world The name of the World
+     * @param user The ID of the user
+     * @return The number of loot times which were removed
+     */
+    int removeWorld(String world, int user);
+
+    /**
+     * Returns the loot time of each chest for the given user
+     *
+     * @param user The ID of the user
+     * @return The map of chest IDs to loot times (NO_CHEST for loot times which are not tied to a chest)
+     */
+    Map<Integer, Long> getUserTimes(int user);
+
+    /**
+     * Removes loot times which are earlier than the given time.
+     * This is called every tick so it should only look at a small part of the table
+     *
+     * @param time The earliest loot time which will be kept
+     * @return The number of loot times which were removed
+     */
+    int removeExpired(long time);
+
+    /**
+     * Removes every loot time
+     */
+    void clear();
+
+    /**
+     * Returns the number of loot times
+     *
+     * @return The number of entries
+     */
+    int size();
+
+    /**
+     * Returns true if there are no loot times
+     *
+     * @return true if the table is empty
+     */
+    boolean isEmpty();
+
+    /**
+     * Reads loot times from the given Properties file and adds them to this table
+     *
+     * @param in The stream of the Properties file
+     * @throws IOException if the stream cannot be read
+     */
+    void load(InputStream in) throws IOException;
+
+    /**
+     * Returns a copy of every loot time which may be written from another thread
+     *
+     * @return The Snapshot of this table
+     */
+    CooldownStore.Snapshot snapshot();
+}
@@ -0,0 +1,182 @@
+package com.codisimus.plugins.phatloots;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.logging.Level;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * The FlatFileBackend stores each PhatLoot as three files within the PhatLoots data folder.
+ * LootTables/name.yml holds the loot table, Chests/name.txt holds the linked chests
+ * and LootTimes/name.properties (plus its journal) holds the loot times
+ *
+ * @author Codisimus
+ */
+final class FlatFileBackend implements StorageBackend {
+    private static final String LOOT_TABLES = "LootTables";
+    private static final String CHESTS = "Chests";
+
+    /**
+     * Reads each YAML file in the LootTables folder
+     *
+     * @return PhatLoot name -> The YAML which contains the PhatLoot
+     */
+    @Override
+    public Map<String, YamlConfiguration> loadLootTables() {
+        LinkedHashMap<String, YamlConfiguration> tables = new LinkedHashMap<>();
+        File[] files = new File(PhatLoots.dataFolder, LOOT_TABLES).listFiles(PhatLootsUtil.YAML_FILTER);
+        if (files == null) {
+            return tables;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            name = name.substring(0, name.length() - PhatLootsUtil.YAML_EXTENSION.length());
+            tables.put(name, PhatLoots.loadConfig(file));
+        }
+        return tables;
+    }
+
+    /**
+     * Writes the loot table to LootTables/name.yml on the I/O thread
+     *
+     * @param name The name of the PhatLoot
+     * @param data The PhatLoot as returned by PhatLootsIO.snapshot
+     */
+    @Override
+    public void saveLootTable(final String name, final Object data) {
+        final File file = getFile(LOOT_TABLES, name, PhatLootsUtil.YAML_EXTENSION);
+        PhatLootsIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                //Create a new config and populate it with the PhatLoot's information
+                YamlConfiguration config = new YamlConfiguration();
+                config.set(name, data);
+
+                //Save the config with UTF-8 encoding
+                try {
+                    PhatLootsIO.writeAtomically(file, config.saveToString().getBytes(StandardCharsets.UTF_8));
+                } catch (IOException ex) {
+                    PhatLoots.logger.log(Level.SEVERE, "Could not save PhatLoot " + name, ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads each line of Chests/name.txt
+     *
+     * @param name The name of the PhatLoot
+     * @return The world, x, y and z of each chest
+     */
+    @Override
+    public List<String[]> loadChests(String name) {
+        ArrayList<String[]> chests = new ArrayList<>();
+        File file = getFile(CHESTS, name, PhatLootsUtil.TEXT_EXTENSION);
+        if (!file.exists()) {
+            return chests;
+        }
+        try (Scanner scanner = new Scanner(file)) {
+            //Each line of the file is a new PhatLootChest
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                String[] split = line.split("'");
+                if (split.length == 4) {
+                    chests.add(split);
+                } else {
+                    PhatLoots.logger.severe("Invalid chest data for PhatLoot: " + name);
+                    PhatLoots.logger.severe("Failed line of data: " + line);
+                }
+            }
+        } catch (IOException ex) {
+            PhatLoots.logger.log(Level.SEVERE, "Load Failed!", ex);
+        }
+        return chests;
+    }
+
+    /**
+     * Writes each chest as a line of Chests/name.txt on the I/O thread
+     *
+     * @param name The name of the PhatLoot
+     * @param chests The String representation of each PhatLootChest (world'x'y'z)
+     */
+    @Override
+    public void saveChests(String name, List<String> chests) {
+        File file = getFile(CHESTS, name, PhatLootsUtil.TEXT_EXTENSION);
+
+        //Don't save an empty file
+        if (chests.isEmpty()) {
+            //Delete the pre-existing file
+            PhatLootsIO.delete(file);
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String chest : chests) {
+            sb.append(chest).append(System.lineSeparator());
+        }
+        PhatLootsIO.write(file, sb.toString().getBytes(Charset.defaultCharset()));
+    }
+
+    /**
+     * Reads the loot times from LootTimes/name.properties and its journal
+     *
+     * @param name The name of the PhatLoot
+     * @param store The loot times of the PhatLoot
+     * @return The LootTimesJournal of the PhatLoot
+     */
+    @Override
+    public LootTimesLog openLootTimes(String name, CooldownTable store) {
+        LootTimesJournal journal = new LootTimesJournal(name);
+        journal.load(store);
+        return journal;
+    }
+
+    /**
+     * Deletes the LootTables and Chests files of the PhatLoot
+     *
+     * @param name The name of the PhatLoot
+     */
+    @Override
+    public void deletePhatLoot(String name) {
+        PhatLootsIO.delete(getFile(LOOT_TABLES, name, PhatLootsUtil.YAML_EXTENSION));
+        PhatLootsIO.delete(getFile(CHESTS, name, PhatLootsUtil.TEXT_EXTENSION));
+    }
+
+    /**
+     * Returns true if there are no files in the LootTables folder
+     *
+     * @return true if there are no loot tables
+     */
+    @Override
+    public boolean isEmpty() {
+        File[] files = new File(PhatLoots.dataFolder, LOOT_TABLES).listFiles(PhatLootsUtil.YAML_FILTER);
+        return files == null || files.length == 0;
+    }
+
+    /**
+     * Waits for any pending files to be written
+     */
+    @Override
+    public void close() {
+        PhatLootsIO.flush();
+    }
+
+    /**
+     * Returns the file of a PhatLoot within the given folder
+     *
+     * @param folder The name of the folder
+     * @param name The name of the PhatLoot
+     * @param extension The extension of the file
+     * @return The File of the PhatLoot
+     */
+    private static File getFile(String folder, String name, String extension) {
+        return new File(PhatLoots.dataFolder, folder + File.separator + name + extension);
+    }
+}
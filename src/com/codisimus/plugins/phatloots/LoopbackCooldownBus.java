@@ -0,0 +1,53 @@
+package com.codisimus.plugins.phatloots;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A LoopbackCooldownBus delivers messages to every other LoopbackCooldownBus within the same JVM.
+ * A single server has no other bus so its messages go nowhere,
+ * while several coordinators within one process may be linked together for testing
+ *
+ * @author Codisimus
+ */
+public final class LoopbackCooldownBus implements CooldownBus {
+    private static final CopyOnWriteArrayList<LoopbackCooldownBus> buses = new CopyOnWriteArrayList<>();
+    private volatile Receiver receiver;
+
+    public LoopbackCooldownBus() {
+        buses.add(this);
+    }
+
+    /**
+     * Hands the message to the receiver of every other bus
+     *
+     * @param message The encoded loot time change
+     */
+    @Override
+    public void publish(byte[] message) {
+        for (LoopbackCooldownBus bus : buses) {
+            Receiver other = bus.receiver;
+            if (bus != this && other != null) {
+                other.receive(message.clone());
+            }
+        }
+    }
+
+    /**
+     * Sets the receiver of messages from other buses
+     *
+     * @param receiver The Receiver of this bus
+     */
+    @Override
+    public void subscribe(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    /**
+     * Removes this bus so that it no longer sends or receives messages
+     */
+    @Override
+    public void close() {
+        buses.remove(this);
+        receiver = null;
+    }
+}
@@ -0,0 +1,455 @@
+package com.codisimus.plugins.phatloots;
+
+import com.codisimus.plugins.phatloots.loot.CommandLoot;
+import com.codisimus.plugins.phatloots.loot.LootBundle;
+import com.codisimus.plugins.phatloots.loot.LootPlan;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import org.bukkit.command.CommandSender;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Rolls for the loot of a PhatLoot many times on a fork-join pool and reports the results.
+ * This allows the drop rates of a loot table to be checked without looting chests by hand
+ *
+ * @author Codisimus
+ */
+public class LootSimulator {
+    private static final int ROLLS_PER_TASK = 10000; //Tasks with fewer rolls than this are not split
+    private static final int CHAT_LINES = 10; //The maximum number of items, commands and messages listed in chat
+    private static final String FOLDER = "Simulations";
+    private static final AtomicBoolean simulating = new AtomicBoolean(); //True while a simulation is in progress
+    private static ForkJoinPool pool;
+
+    /**
+     * The aggregated results of many rolls
+     */
+    public static class Result {
+        public long rolls;
+        public double moneySum;
+        public double moneySquareSum;
+        public double expSum;
+        public double expSquareSum;
+        public final HashMap<String, ItemResult> items = new HashMap<>();
+        public final HashMap<String, long[]> commands = new HashMap<>(); //Number of rolls which ran each command
+        public final HashMap<String, long[]> messages = new HashMap<>(); //Number of rolls which sent each message
+
+        /**
+         * Adds the given LootBundle to the results
+         *
+         * @param lootBundle The loot of a single roll
+         */
+        private void add(LootBundle lootBundle) {
+            rolls++;
+            double money = lootBundle.getMoney();
+            moneySum += money;
+            moneySquareSum += money * money;
+            double exp = lootBundle.getExp();
+            expSum += exp;
+            expSquareSum += exp * exp;
+
+            //An item which is given multiple times in a single roll is only counted as one hit
+            HashSet<String> hits = new HashSet<>();
+            for (ItemStack item : lootBundle.getItemList()) {
+                String name = PhatLootsUtil.getItemName(item);
+                ItemResult itemResult = items.get(name);
+                if (itemResult == null) {
+                    itemResult = new ItemResult();
+                    items.put(name, itemResult);
+                }
+                if (hits.add(name)) {
+                    itemResult.hits++;
+                }
+                itemResult.amount += item.getAmount();
+                increment(itemResult.stackSizes, item.getAmount(), 1);
+            }
+            hits.clear();
+            for (CommandLoot command : lootBundle.getCommandList()) {
+                if (hits.add(command.command)) {
+                    increment(commands, command.command, 1);
+                }
+            }
+            hits.clear();
+            for (String message : lootBundle.getMessageList()) {
+                if (hits.add(message)) {
+                    increment(messages, message, 1);
+                }
+            }
+        }
+
+        /**
+         * Adds the given results to these results
+         *
+         * @param result The results to merge into these results
+         */
+        private void merge(Result result) {
+            rolls += result.rolls;
+            moneySum += result.moneySum;
+            moneySquareSum += result.moneySquareSum;
+            expSum += result.expSum;
+            expSquareSum += result.expSquareSum;
+            for (Map.Entry<String, ItemResult> entry : result.items.entrySet()) {
+                ItemResult itemResult = items.get(entry.getKey());
+                if (itemResult == null) {
+                    items.put(entry.getKey(), entry.getValue());
+                } else {
+                    itemResult.hits += entry.getValue().hits;
+                    itemResult.amount += entry.getValue().amount;
+                    for (Map.Entry<Integer, long[]> size : entry.getValue().stackSizes.entrySet()) {
+                        increment(itemResult.stackSizes, size.getKey(), size.getValue()[0]);
+                    }
+                }
+            }
+            for (Map.Entry<String, long[]> entry : result.commands.entrySet()) {
+                increment(commands, entry.getKey(), entry.getValue()[0]);
+            }
+            for (Map.Entry<String, long[]> entry : result.messages.entrySet()) {
+                increment(messages, entry.getKey(), entry.getValue()[0]);
+            }
+        }
+
+        /**
+         * Returns the average amount of money given per roll
+         *
+         * @return The mean of the money
+         */
+        public double getMoneyMean() {
+            return rolls == 0 ? 0 : moneySum / rolls;
+        }
+
+        /**
+         * Returns the variance of the amount of money given per roll
+         *
+         * @return The variance of the money
+         */
+        public double getMoneyVariance() {
+            return rolls == 0 ? 0 : Math.max(0, moneySquareSum / rolls - getMoneyMean() * getMoneyMean());
+        }
+
+        /**
+         * Returns the average amount of experience given per roll
+         *
+         * @return The mean of the experience
+         */
+        public double getExpMean() {
+            return rolls == 0 ? 0 : expSum / rolls;
+        }
+
+        /**
+         * Returns the variance of the amount of experience given per roll
+         *
+         * @return The variance of the experience
+         */
+        public double getExpVariance() {
+            return rolls == 0 ? 0 : Math.max(0, expSquareSum / rolls - getExpMean() * getExpMean());
+        }
+    }
+
+    /**
+     * The aggregated results of a single item
+     */
+    public static class ItemResult {
+        public long hits; //Number of rolls which gave the item
+        public long amount; //Total number of the item which was given
+        public final TreeMap<Integer, long[]> stackSizes = new TreeMap<>(); //Number of stacks of each size
+    }
+
+    /**
+     * Rolls for a range of simulated rolls, splitting the range if it is large
+     */
+    private static class SimulationTask extends RecursiveTask<Result> {
+        private final LootPlan plan;
+        private final double lootingBonus;
+        private final long start;
+        private final long end;
+
+        private SimulationTask(LootPlan plan, double lootingBonus, long start, long end) {
+            this.plan = plan;
+            this.lootingBonus = lootingBonus;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Result compute() {
+            if (end - start > ROLLS_PER_TASK) {
+                long middle = (start + end) >>> 1;
+                SimulationTask left = new SimulationTask(plan, lootingBonus, start, middle);
+                SimulationTask right = new SimulationTask(plan, lootingBonus, middle, end);
+                left.fork();
+                Result result = right.compute();
+                result.merge(left.join());
+                return result;
+            }
+
+            //Seed each range separately so that seeded simulations do not depend on thread scheduling
+            Long seed = PhatLootsRandom.getSeed();
+            if (seed != null) {
+                PhatLootsRandom.setThreadSeed(seed + start);
+            }
+            try {
+                Result result = new Result();
+                for (long i = start; i < end; i++) {
+                    result.add(plan.roll(new LootBundle(), lootingBonus));
+                }
+                return result;
+            } finally {
+                if (seed != null) {
+                    PhatLootsRandom.clearThreadGenerator();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rolls for the loot of the given PhatLoot the given number of times.
+     * This blocks until every roll has completed so it should not be called on the server thread
+     *
+     * @param plan The compiled LootPlan of a PhatLoot
+     * @param rolls The number of times to roll
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @return The aggregated results of the rolls
+     */
+    public static Result simulate(LootPlan plan, long rolls, double lootingBonus) {
+        return getPool().invoke(new SimulationTask(plan, lootingBonus, 0, rolls));
+    }
+
+    /**
+     * Simulates rolls for the given PhatLoot off of the server thread.
+     * A summary is sent to the CommandSender and the full results are saved as a CSV file.
+     * Only one simulation may run at a time
+     *
+     * @param sender The CommandSender who requested the simulation
+     * @param phatLoot The PhatLoot to roll for
+     * @param rolls The number of times to roll
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @return false if another simulation is already in progress
+     */
+    public static boolean simulate(final CommandSender sender, final PhatLoot phatLoot, final long rolls, final double lootingBonus) {
+        if (!simulating.compareAndSet(false, true)) {
+            return false;
+        }
+        //Compile the plan on the server thread so that the loot tables are not read while being edited
+        final LootPlan plan = phatLoot.getLootPlan();
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                final Result result;
+                final long time;
+                final File file;
+                try {
+                    long startTime = System.currentTimeMillis();
+                    result = simulate(plan, rolls, lootingBonus);
+                    time = System.currentTimeMillis() - startTime;
+                    file = writeCSV(phatLoot.name, result);
+                } catch (CancellationException ex) {
+                    //The pool was shut down because the plugin is being disabled
+                    return;
+                } finally {
+                    simulating.set(false);
+                }
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        sendSummary(sender, phatLoot, result, time, file);
+                    }
+                }.runTask(PhatLoots.plugin);
+            }
+        }.runTaskAsynchronously(PhatLoots.plugin);
+        return true;
+    }
+
+    /**
+     * Stops the simulation which is in progress and the fork-join pool
+     */
+    static void shutdown() {
+        ForkJoinPool service;
+        synchronized (LootSimulator.class) {
+            service = pool;
+            pool = null;
+        }
+        if (service == null) {
+            return;
+        }
+        service.shutdownNow();
+        try {
+            if (!service.awaitTermination(10, TimeUnit.SECONDS)) {
+                PhatLoots.logger.warning("Timed out while stopping the simulation");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the fork-join pool which simulations are run on
+     *
+     * @return The ForkJoinPool
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Sends a summary of the results to the given CommandSender
+     *
+     * @param sender The CommandSender who requested the simulation
+     * @param phatLoot The PhatLoot which was rolled for
+     * @param result The results of the simulation
+     * @param time The number of milliseconds that the simulation took
+     * @param file The CSV file of the full results or null if it failed to save
+     */
+    private static void sendSummary(CommandSender sender, PhatLoot phatLoot, Result result, long time, File file) {
+        sender.sendMessage("§5Simulated §6" + result.rolls + "§5 rolls of PhatLoot §6" + phatLoot.name + "§5 in §6" + time + "ms");
+        sender.sendMessage("§2Money:§b " + format(result.getMoneyMean()) + " ± " + format(Math.sqrt(result.getMoneyVariance()))
+                + " §2Experience:§b " + format(result.getExpMean()) + " ± " + format(Math.sqrt(result.getExpVariance())));
+
+        List<Map.Entry<String, ItemResult>> items = new ArrayList<>(result.items.entrySet());
+        Collections.sort(items, new Comparator<Map.Entry<String, ItemResult>>() {
+            @Override
+            public int compare(Map.Entry<String, ItemResult> o1, Map.Entry<String, ItemResult> o2) {
+                return Long.compare(o2.getValue().hits, o1.getValue().hits);
+            }
+        });
+        int lines = 0;
+        for (Map.Entry<String, ItemResult> entry : items) {
+            if (lines++ == CHAT_LINES) {
+                sender.sendMessage("§7..." + (items.size() - CHAT_LINES) + " more items");
+                break;
+            }
+            ItemResult itemResult = entry.getValue();
+            sender.sendMessage("§2" + entry.getKey() + ":§b " + formatRate(itemResult.hits, result.rolls)
+                    + " §2Avg Amount:§b " + format(itemResult.hits == 0 ? 0 : (double) itemResult.amount / itemResult.hits));
+        }
+        sendHitRates(sender, "Command", result.commands, result.rolls);
+        sendHitRates(sender, "Message", result.messages, result.rolls);
+
+        if (file != null) {
+            sender.sendMessage("§5Full results have been saved to §6" + file.getName());
+        }
+    }
+
+    /**
+     * Sends the hit rate of each command or message to the given CommandSender
+     *
+     * @param sender The CommandSender who requested the simulation
+     * @param type "Command" or "Message"
+     * @param hits The number of rolls which gave each command or message
+     * @param rolls The total number of rolls
+     */
+    private static void sendHitRates(CommandSender sender, String type, HashMap<String, long[]> hits, long rolls) {
+        int lines = 0;
+        for (Map.Entry<String, long[]> entry : hits.entrySet()) {
+            if (lines++ == CHAT_LINES) {
+                sender.sendMessage("§7..." + (hits.size() - CHAT_LINES) + " more");
+                break;
+            }
+            sender.sendMessage("§2" + type + " §f" + entry.getKey() + "§2:§b " + formatRate(entry.getValue()[0], rolls));
+        }
+    }
+
+    /**
+     * Writes the results of a simulation to a new CSV file in the Simulations folder
+     *
+     * @param name The name of the PhatLoot which was rolled for
+     * @param result The results of the simulation
+     * @return The File that was written or null if it could not be saved
+     */
+    private static File writeCSV(String name, Result result) {
+        File dir = new File(PhatLoots.dataFolder, FOLDER);
+        dir.mkdirs();
+        String timeStamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+        File file = new File(dir, name + '_' + timeStamp + ".csv");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("Type,Name,Hits,HitRate,TotalAmount,AmountPerRoll,Variance,StackSizes");
+            writer.println("Money,," + result.rolls + ",1," + result.moneySum + ',' + result.getMoneyMean() + ',' + result.getMoneyVariance() + ',');
+            writer.println("Experience,," + result.rolls + ",1," + result.expSum + ',' + result.getExpMean() + ',' + result.getExpVariance() + ',');
+            for (Map.Entry<String, ItemResult> entry : result.items.entrySet()) {
+                ItemResult itemResult = entry.getValue();
+                StringBuilder sizes = new StringBuilder();
+                for (Map.Entry<Integer, long[]> size : itemResult.stackSizes.entrySet()) {
+                    if (sizes.length() > 0) {
+                        sizes.append(' ');
+                    }
+                    sizes.append(size.getKey()).append('x').append(size.getValue()[0]);
+                }
+                writer.println("Item," + escape(entry.getKey()) + ',' + itemResult.hits + ','
+                        + (double) itemResult.hits / result.rolls + ',' + itemResult.amount + ','
+                        + (double) itemResult.amount / result.rolls + ",," + sizes);
+            }
+            for (Map.Entry<String, long[]> entry : result.commands.entrySet()) {
+                writer.println("Command," + escape(entry.getKey()) + ',' + entry.getValue()[0] + ','
+                        + (double) entry.getValue()[0] / result.rolls + ",,,,");
+            }
+            for (Map.Entry<String, long[]> entry : result.messages.entrySet()) {
+                writer.println("Message," + escape(entry.getKey()) + ',' + entry.getValue()[0] + ','
+                        + (double) entry.getValue()[0] / result.rolls + ",,,,");
+            }
+            return file;
+        } catch (IOException ex) {
+            PhatLoots.logger.log(Level.SEVERE, "Failed to save simulation results to " + file.getName(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the given amount to the counter of the given key
+     *
+     * @param map The map of counters
+     * @param key The key of the counter
+     * @param amount The amount to add
+     */
+    private static <K> void increment(Map<K, long[]> map, K key, long amount) {
+        long[] counter = map.get(key);
+        if (counter == null) {
+            counter = new long[1];
+            map.put(key, counter);
+        }
+        counter[0] += amount;
+    }
+
+    /**
+     * Returns the given value quoted for a CSV file
+     *
+     * @param value The value which may contain commas or quotes
+     * @return The quoted value
+     */
+    private static String escape(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Returns the given number rounded to two decimal places
+     *
+     * @param number The number to format
+     * @return The formatted number
+     */
+    private static String format(double number) {
+        return String.format("%.2f", number);
+    }
+
+    /**
+     * Returns the given hit rate as a percentage
+     *
+     * @param hits The number of rolls which were hits
+     * @param rolls The total number of rolls
+     * @return The formatted percentage
+     */
+    private static String formatRate(long hits, long rolls) {
+        return String.format("%.3f%%", rolls == 0 ? 0 : hits * 100.0 / rolls);
+    }
+}
@@ -0,0 +1,522 @@
+package com.codisimus.plugins.phatloots;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * A LootTimesJournal records each change to the loot times of a PhatLoot as a small binary record.
+ * Records are appended to LootTimes/name.journal so that saving never rewrites every loot time.
+ * When the journal grows too large it is compacted by writing a snapshot (the .properties file) on a background thread.
+ * Each record is its type, the length of its payload, the payload and a checksum
+ * so that a record which was only partly written before a crash is discarded on replay
+ *
+ * @author Codisimus
+ */
+final class LootTimesJournal implements LootTimesLog {
+    static final String EXTENSION = ".journal";
+    private static final String OLD_EXTENSION = ".journal.old"; //The journal which is being compacted
+    private static final long MIN_COMPACT_BYTES = 64 * 1024; //Journals smaller than this are never compacted
+    private static final int BYTES_PER_ENTRY = 24; //Compact once the journal is larger than a snapshot of about this size per entry
+
+    private static final byte DEFINE_CHEST = 1; //Journal ID, chest name
+    private static final byte DEFINE_USER = 2; //Journal ID, user name
+    private static final byte PUT = 3; //Chest ID, user ID, time
+    private static final byte REMOVE = 4; //Chest ID, user ID
+    private static final byte REMOVE_CHEST = 5; //Chest ID
+    private static final byte REMOVE_USER = 6; //User ID
+    private static final byte REMOVE_WORLD = 7; //World name, user ID
+    private static final byte CLEAR = 8;
+
+    private final String name;
+    private DataOutputStream out;
+    private long length;
+    private boolean modified; //True if records have been appended since the journal was last flushed
+    private BitSet definedChests = new BitSet(); //IDs which have been defined in the open journal
+    private BitSet definedUsers = new BitSet();
+    private volatile boolean compacting; //True while a snapshot is being written
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(64);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Constructs the journal of the PhatLoot with the given name
+     *
+     * @param name The name of the PhatLoot
+     */
+    LootTimesJournal(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records that a loot time was set
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @param time The time in milliseconds
+     */
+    @Override
+    public void put(int chest, int user, long time) {
+        try {
+            defineChest(chest);
+            defineUser(user);
+            record.writeByte(PUT);
+            record.writeInt(chest);
+            record.writeInt(user);
+            record.writeLong(time);
+            append();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    /**
+     * Records that a loot time was removed
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     */
+    @Override
+    public void remove(int chest, int user) {
+        try {
+            defineChest(chest);
+            defineUser(user);
+            record.writeByte(REMOVE);
+            record.writeInt(chest);
+            record.writeInt(user);
+            append();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    /**
+     * Records that every loot time of a chest was removed
+     *
+     * @param chest The ID of the chest
+     */
+    @Override
+    public void removeChest(int chest) {
+        try {
+            defineChest(chest);
+            record.writeByte(REMOVE_CHEST);
+            record.writeInt(chest);
+            append();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    /**
+     * Records that every loot time of a user was removed
+     *
+     * @param user The ID of the user
+     */
+    @Override
+    public void removeUser(int user) {
+        try {
+            defineUser(user);
+            record.writeByte(REMOVE_USER);
+            record.writeInt(user);
+            append();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    /**
+     * Records that the loot times of a user were removed for every chest within a World
+     *
+     * @param world The name of the World
+     * @param user The ID of the user
+     */
+    @Override
+    public void removeWorld(String world, int user) {
+        try {
+            defineUser(user);
+            record.writeByte(REMOVE_WORLD);
+            record.writeUTF(world);
+            record.writeInt(user);
+            append();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    /**
+     * Records that every loot time was removed
+     */
+    @Override
+    public void clear() {
+        try {
+            record.writeByte(CLEAR);
+            append();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    /**
+     * Writes any buffered records to the journal file and compacts it if it has grown too large
+     *
+     * @param store The loot times of the PhatLoot
+     */
+    @Override
+    public void save(CooldownTable store) {
+        flush();
+        if (needsCompaction(store.size())) {
+            //Replace the journal with a new file of all Loot times
+            compact(store);
+        }
+    }
+
+    /**
+     * Replaces the journal with a snapshot of the given store
+     *
+     * @param store The loot times of the PhatLoot
+     */
+    @Override
+    public void rewrite(CooldownTable store) {
+        flush();
+        compact(store);
+    }
+
+    /**
+     * Writes any buffered records to the journal file
+     */
+    private void flush() {
+        modified = false;
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException ex) {
+                failed(ex);
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the journal file (it is reopened by the next record)
+     */
+    @Override
+    public void close() {
+        modified = false;
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                PhatLoots.logger.log(Level.SEVERE, "Failed to close " + name + EXTENSION, ex);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Returns true if records have been appended since the journal was last flushed
+     *
+     * @return true if save should be called
+     */
+    @Override
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Returns true if the journal has grown large enough to be compacted
+     *
+     * @param entries The number of loot times in the store
+     * @return true if compact should be called
+     */
+    private boolean needsCompaction(int entries) {
+        return !compacting && length > Math.max(MIN_COMPACT_BYTES, (long) entries * BYTES_PER_ENTRY);
+    }
+
+    /**
+     * Replaces the journal with a snapshot of the given store.
+     * The snapshot is written on a background thread and records which are appended meanwhile go to a new journal
+     *
+     * @param store The loot times of the PhatLoot
+     */
+    private void compact(CooldownTable store) {
+        if (compacting) {
+            return;
+        }
+        final File journal = getFile(EXTENSION);
+        final File old = getFile(OLD_EXTENSION);
+        close();
+        if (!old.exists()) {
+            //Start a new journal which the snapshot will not include
+            if (!journal.renameTo(old)) {
+                PhatLoots.logger.severe("Failed to compact " + journal.getName());
+                return;
+            }
+            length = 0;
+            definedChests = new BitSet();
+            definedUsers = new BitSet();
+        } //else a previous compaction failed so the current journal is kept until the next one
+
+        final CooldownStore.Snapshot snapshot = store.snapshot();
+        compacting = true;
+        PhatLootsIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeSnapshot(snapshot);
+                    old.delete();
+                } catch (IOException ex) {
+                    PhatLoots.logger.log(Level.SEVERE, "Failed to write the loot times of " + name, ex);
+                }
+                compacting = false;
+            }
+        });
+    }
+
+    /**
+     * Writes the given snapshot to a temporary file and then moves it over the previous snapshot
+     *
+     * @param snapshot The loot times to write
+     * @throws IOException if the file cannot be written
+     */
+    private void writeSnapshot(CooldownStore.Snapshot snapshot) throws IOException {
+        File file = getFile(PhatLootsUtil.PROPERTIES_EXTENSION);
+        if (snapshot.isEmpty()) {
+            //Don't save an empty file
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.store(bytes);
+        PhatLootsIO.writeAtomically(file, bytes.toByteArray());
+    }
+
+    /**
+     * Reads the snapshot and then applies each record of the journal files to the given store.
+     * A journal which was being compacted is replayed before the current journal.
+     * Replaying records which the snapshot already includes has no effect
+     *
+     * @param store The loot times of the PhatLoot
+     */
+    void load(CooldownTable store) {
+        File file = getFile(PhatLootsUtil.PROPERTIES_EXTENSION);
+        if (file.exists()) {
+            try (FileInputStream fis = new FileInputStream(file)) {
+                store.load(fis);
+            } catch (IOException ex) {
+                PhatLoots.logger.log(Level.SEVERE, "Load Failed!", ex);
+            }
+        }
+        //Apply the changes which were made since the snapshot was written
+        replay(getFile(OLD_EXTENSION), store);
+        length = replay(getFile(EXTENSION), store);
+    }
+
+    /**
+     * Applies each record of the given journal file to the given store
+     *
+     * @param file The journal file
+     * @param store The loot times to modify
+     * @return The length of the valid records (the file is truncated to this length)
+     */
+    private long replay(File file, CooldownTable store) {
+        if (!file.exists()) {
+            return 0;
+        }
+        HashMap<Integer, Integer> chests = new HashMap<>(); //Journal ID -> Interned ID
+        HashMap<Integer, Integer> users = new HashMap<>();
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            CRC32 check = new CRC32();
+            byte[] buffer = new byte[64];
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    break;
+                }
+                int size = in.readUnsignedShort();
+                if (size > buffer.length) {
+                    buffer = new byte[size];
+                }
+                in.readFully(buffer, 0, size);
+                int expected = in.readInt();
+                check.reset();
+                check.update(type);
+                check.update(size >>> 8);
+                check.update(size);
+                check.update(buffer, 0, size);
+                if ((int) check.getValue() != expected) {
+                    break;
+                }
+                apply(type, new DataInputStream(new ByteArrayInputStream(buffer, 0, size)), chests, users, store);
+                valid += 3 + size + 4;
+            }
+        } catch (EOFException ex) {
+            //The last record was only partly written
+        } catch (IOException ex) {
+            PhatLoots.logger.log(Level.SEVERE, "Failed to read " + file.getName(), ex);
+            return file.length();
+        }
+
+        if (valid < file.length()) {
+            PhatLoots.logger.warning("Discarding " + (file.length() - valid) + " unreadable bytes of " + file.getName());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            } catch (IOException ex) {
+                PhatLoots.logger.log(Level.SEVERE, "Failed to truncate " + file.getName(), ex);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Applies a single record to the given store
+     *
+     * @param type The type of the record
+     * @param in The payload of the record
+     * @param chests The interned ID of each chest which the journal has defined
+     * @param users The interned ID of each user which the journal has defined
+     * @param store The loot times to modify
+     * @throws IOException if the payload is invalid
+     */
+    private static void apply(int type, DataInputStream in, HashMap<Integer, Integer> chests,
+            HashMap<Integer, Integer> users, CooldownTable store) throws IOException {
+        switch (type) {
+        case DEFINE_CHEST:
+            int chest = in.readInt();
+            chests.put(chest, CooldownStore.internChest(in.readUTF()));
+            break;
+        case DEFINE_USER:
+            int user = in.readInt();
+            users.put(user, CooldownStore.internUser(in.readUTF()));
+            break;
+        case PUT:
+            store.put(lookup(chests, in.readInt()), lookup(users, in.readInt()), in.readLong());
+            break;
+        case REMOVE:
+            store.remove(lookup(chests, in.readInt()), lookup(users, in.readInt()));
+            break;
+        case REMOVE_CHEST:
+            store.removeChest(lookup(chests, in.readInt()));
+            break;
+        case REMOVE_USER:
+            store.removeUser(lookup(users, in.readInt()));
+            break;
+        case REMOVE_WORLD:
+            String world = in.readUTF();
+            store.removeWorld(world, lookup(users, in.readInt()));
+            break;
+        case CLEAR:
+            store.clear();
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Returns the interned ID of the given journal ID
+     *
+     * @param ids The interned ID of each defined journal ID
+     * @param id The journal ID
+     * @return The interned ID
+     * @throws IOException if the ID was never defined
+     */
+    private static int lookup(HashMap<Integer, Integer> ids, int id) throws IOException {
+        Integer interned = ids.get(id);
+        if (interned == null) {
+            throw new IOException("Undefined ID " + id);
+        }
+        return interned;
+    }
+
+    /**
+     * Writes a definition record if the chest has not been defined in the open journal
+     *
+     * @param chest The ID of the chest
+     * @throws IOException if the record cannot be written
+     */
+    private void defineChest(int chest) throws IOException {
+        if (!definedChests.get(chest)) {
+            record.writeByte(DEFINE_CHEST);
+            record.writeInt(chest);
+            record.writeUTF(String.valueOf(CooldownStore.getChestName(chest)));
+            append();
+            definedChests.set(chest);
+        }
+    }
+
+    /**
+     * Writes a definition record if the user has not been defined in the open journal
+     *
+     * @param user The ID of the user
+     * @throws IOException if the record cannot be written
+     */
+    private void defineUser(int user) throws IOException {
+        if (!definedUsers.get(user)) {
+            record.writeByte(DEFINE_USER);
+            record.writeInt(user);
+            record.writeUTF(CooldownStore.getUserName(user));
+            append();
+            definedUsers.set(user);
+        }
+    }
+
+    /**
+     * Appends the buffered record with its length and checksum
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    private void append() throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getFile(EXTENSION), true)));
+        }
+        byte[] bytes = recordBytes.toByteArray(); //The type followed by the payload
+        recordBytes.reset();
+        int size = bytes.length - 1;
+        crc.reset();
+        crc.update(bytes[0]);
+        crc.update(size >>> 8);
+        crc.update(size);
+        crc.update(bytes, 1, size);
+        out.writeByte(bytes[0]);
+        out.writeShort(size);
+        out.write(bytes, 1, size);
+        out.writeInt((int) crc.getValue());
+        length += bytes.length + 6;
+        modified = true;
+    }
+
+    /**
+     * Logs that a record could not be written
+     *
+     * @param ex The cause of the failure
+     */
+    private void failed(IOException ex) {
+        recordBytes.reset();
+        PhatLoots.logger.log(Level.SEVERE, "Failed to write to " + name + EXTENSION, ex);
+    }
+
+    /**
+     * Closes and deletes every loot time file of the PhatLoot
+     */
+    @Override
+    public void delete() {
+        close();
+        PhatLootsIO.flush();
+        getFile(EXTENSION).delete();
+        getFile(OLD_EXTENSION).delete();
+        getFile(PhatLootsUtil.PROPERTIES_EXTENSION).delete();
+    }
+
+    /**
+     * Returns the loot time file with the given extension
+     *
+     * @param extension The extension of the file
+     * @return The File within the LootTimes folder
+     */
+    private File getFile(String extension) {
+        return new File(PhatLoots.dataFolder, "LootTimes" + File.separator + name + extension);
+    }
+}
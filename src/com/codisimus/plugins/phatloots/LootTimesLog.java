@@ -0,0 +1,85 @@
+package com.codisimus.plugins.phatloots;
+
+/**
+ * A LootTimesLog persists each change to the loot times of a single PhatLoot.
+ * Changes are recorded as they happen on the main thread and are written when the log is saved.
+ * Chests and users are identified by the IDs which CooldownStore interned them as
+ *
+ * @author Codisimus
+ */
+public interface LootTimesLog {
+    /**
+     * Records that a loot time was set
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @param time The time in milliseconds
+     */
+    void put(int chest, int user, long time);
+
+    /**
+     * Records that a loot time was removed
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     */
+    void remove(int chest, int user);
+
+    /**
+     * Records that every loot time of a chest was removed
+     *
+     * @param chest The ID of the chest
+     */
+    void removeChest(int chest);
+
+    /**
+     * Records that every loot time of a user was removed
+     *
+     * @param user The ID of the user
+     */
+    void removeUser(int user);
+
+    /**
+     * Records that the loot times of a user were removed for every chest within a World
+     *
+     * @param world The name of the World
+     * @param user The ID of the user
+     */
+    void removeWorld(String world, int user);
+
+    /**
+     * Records that every loot time was removed
+     */
+    void clear();
+
+    /**
+     * Returns true if changes have been recorded since the log was last saved
+     *
+     * @return true if save should be called
+     */
+    boolean isModified();
+
+    /**
+     * Writes the recorded changes
+     *
+     * @param store The current loot times of the PhatLoot
+     */
+    void save(CooldownTable store);
+
+    /**
+     * Replaces every persisted loot time with those of the given store
+     *
+     * @param store The current loot times of the PhatLoot
+     */
+    void rewrite(CooldownTable store);
+
+    /**
+     * Writes the recorded changes and releases any open files (the log is reopened by the next change)
+     */
+    void close();
+
+    /**
+     * Deletes every persisted loot time of the PhatLoot
+     */
+    void delete();
+}
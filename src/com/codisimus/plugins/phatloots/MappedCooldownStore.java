@@ -0,0 +1,1076 @@
+package com.codisimus.plugins.phatloots;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * A MappedCooldownStore keeps the loot times of a PhatLoot in a memory-mapped file of fixed-width records
+ * so that the number of loot times does not affect the size of the Java heap.
+ * Each record is a chest, a user and a loot time (16 bytes) and records are placed using open addressing (linear probing).
+ * The IDs which CooldownStore interns differ every time that the server starts
+ * so the file uses its own IDs which are defined in a dictionary file next to it.
+ * Every change is made directly within the mapping so saving only needs to force it to the disk.
+ * The table grows by copying a few slots at a time into a second file which replaces the first once it holds every loot time.
+ * The two files take turns and the one with the newest generation is used so that a mapped file is never renamed
+ *
+ * @author Codisimus
+ */
+public final class MappedCooldownStore implements CooldownTable {
+    static final String EXTENSION = ".mapped";
+    private static final String IDS_EXTENSION = ".ids"; //Appended to the name of the mapped file
+    private static final String ALTERNATE_EXTENSION = ".1"; //Appended to the name of the file which the table grows into
+    private static final int MAGIC = 0x504C4354; //Written last so that a file which is not complete has no magic
+    private static final int VERSION = 1;
+    private static final int HEADER = 16; //Magic, version, capacity and generation
+    private static final int RECORD = 16; //Chest ID + 1 (0 marks an empty slot), user ID, time
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 26; //Keeps the mapping below 2 GB
+    private static final int SWEEP_SLOTS = 4096; //The number of slots which removeExpired looks at each time
+    private static final int MIGRATE_SLOTS = 256; //The number of slots which are copied into a growing table by each change
+    private static final int CHEST = 'C'; //Dictionary record of a chest
+    private static final int USER = 'U'; //Dictionary record of a user
+
+    private final File file;
+    private final File alternateFile;
+    private final File idsFile;
+    private Table table; //The table which holds the loot times
+    private Table next; //The larger table which loot times are being copied into or null if the table is not growing
+    private int migrated; //The number of slots of the table which have been copied into the next table
+    private boolean finishing; //True once every slot has been copied and the next table is being forced
+    private int generation;
+    private int growAt; //Growing is not attempted again until this size after it fails
+    private int size;
+    private int sweep; //The next slot which removeExpired looks at
+    private boolean modified; //True if the mapping has changed since it was last forced
+    private FileOutputStream idsOut;
+    private DataOutputStream ids; //Appends definitions to the dictionary
+
+    private int[] chestToFile = new int[0]; //Interned chest ID -> File chest ID (-1 if undefined)
+    private int[] fileToChest = new int[16]; //File chest ID -> Interned chest ID
+    private int fileChests;
+    private int[] userToFile = new int[0];
+    private int[] fileToUser = new int[16];
+    private int fileUsers;
+    private final Log log = new Log();
+
+    /**
+     * Opens the given mapped file, creating it if it does not exist
+     *
+     * @param file The file to map
+     * @throws IOException if the file cannot be read or mapped
+     */
+    public MappedCooldownStore(File file) throws IOException {
+        this.file = file;
+        alternateFile = new File(file.getPath() + ALTERNATE_EXTENSION);
+        idsFile = new File(file.getPath() + IDS_EXTENSION);
+        //File chest ID 0 is always NO_CHEST
+        fileToChest[0] = CooldownStore.NO_CHEST;
+        fileChests = 1;
+        chestToFile = grow(chestToFile, CooldownStore.NO_CHEST);
+        chestToFile[CooldownStore.NO_CHEST] = 0;
+        readIds();
+
+        //Use whichever file is complete and has the newest generation
+        int fileGeneration = readGeneration(file);
+        int alternateGeneration = readGeneration(alternateFile);
+        if (fileGeneration >= 0 || alternateGeneration >= 0) {
+            generation = Math.max(fileGeneration, alternateGeneration);
+            table = Table.open(fileGeneration >= alternateGeneration ? file : alternateFile);
+            //The size is counted rather than stored so that it is always correct after a crash
+            for (int slot = 0; slot < table.capacity; slot++) {
+                if (table.chestAt(slot) >= 0) {
+                    size++;
+                }
+            }
+            //Records may have reached the disk before the definitions of their IDs
+            int removed = removeMatching(new Filter() {
+                @Override
+                public boolean matches(int chest, int user, long time) {
+                    return chest >= fileChests || user >= fileUsers;
+                }
+            });
+            if (removed > 0) {
+                PhatLoots.logger.warning("Discarded " + removed + " undefined loot times of " + file.getName());
+            }
+        } else {
+            table = Table.create(file, MIN_CAPACITY);
+            table.writeHeader(generation);
+        }
+    }
+
+    /**
+     * Returns true if there is a mapped file for the given file name
+     *
+     * @param file The file which would be mapped
+     * @return true if the file or the file which it grows into exists
+     */
+    static boolean exists(File file) {
+        return file.exists() || new File(file.getPath() + ALTERNATE_EXTENSION).exists();
+    }
+
+    /**
+     * Returns the log which persists this store (changes are already within the mapping)
+     *
+     * @return The LootTimesLog of this store
+     */
+    LootTimesLog getLog() {
+        return log;
+    }
+
+    /**
+     * Returns the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @return The time in milliseconds or ABSENT if there is none
+     */
+    @Override
+    public synchronized long get(int chest, int user) {
+        int slot = table.find(getFileChest(chest), getFileUser(user));
+        return slot < 0 ? CooldownStore.ABSENT : table.timeAt(slot);
+    }
+
+    /**
+     * Sets the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @param time The time in milliseconds
+     */
+    @Override
+    public synchronized void put(int chest, int user, long time) {
+        int fileChest = defineChest(chest);
+        int fileUser = defineUser(user);
+        modified = true;
+        migrate();
+        int slot = table.find(fileChest, fileUser);
+        if (slot >= 0) {
+            write(slot, fileChest, fileUser, time);
+            return;
+        }
+        if ((size + 1) * 4L > table.capacity * 3L && finishing) {
+            //Loot times are being added faster than the I/O thread can finish growing the table
+            finishGrowth(next);
+        }
+        if (size + 1 >= table.capacity) {
+            throw new IllegalStateException(file.getName() + " is full");
+        }
+        write(table.emptySlot(fileChest, fileUser), fileChest, fileUser, time);
+        size++;
+        //Start growing early so that the table is copied a little at a time long before it is full
+        if (next == null && size * 2L > table.capacity && table.capacity < MAX_CAPACITY && size >= growAt) {
+            startGrowth();
+        }
+    }
+
+    /**
+     * Removes the loot time of the given chest and user
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @return true if there was a loot time to remove
+     */
+    @Override
+    public synchronized boolean remove(int chest, int user) {
+        int slot = table.find(getFileChest(chest), getFileUser(user));
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Removes every loot time of the given chest
+     *
+     * @param chest The ID of the chest
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeChest(int chest) {
+        final int fileChest = getFileChest(chest);
+        if (fileChest < 0) {
+            return 0;
+        }
+        return removeMatching(new Filter() {
+            @Override
+            public boolean matches(int chest, int user, long time) {
+                return chest == fileChest;
+            }
+        });
+    }
+
+    /**
+     * Removes each loot time which is earlier than the given time
+     *
+     * @param chest The ID of the chest or -1 to check every chest
+     * @param time The earliest loot time which will be kept
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeOlderThan(int chest, final long time) {
+        final int fileChest = chest < 0 ? -1 : getFileChest(chest);
+        if (chest >= 0 && fileChest < 0) {
+            return 0;
+        }
+        return removeMatching(new Filter() {
+            @Override
+            public boolean matches(int chest, int user, long loot) {
+                return loot < time && (fileChest < 0 || chest == fileChest);
+            }
+        });
+    }
+
+    /**
+     * Removes every loot time of the given user
+     *
+     * @param user The ID of the user
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeUser(int user) {
+        final int fileUser = getFileUser(user);
+        if (fileUser < 0) {
+            return 0;
+        }
+        return removeMatching(new Filter() {
+            @Override
+            public boolean matches(int chest, int user, long time) {
+                return user == fileUser;
+            }
+        });
+    }
+
+    /**
+     * Removes the loot times of the given user for every chest within the given World
+     *
+     * @param world The name of the World
+     * @param user The ID of the user
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeWorld(String world, int user) {
+        final int fileUser = getFileUser(user);
+        if (fileUser < 0) {
+            return 0;
+        }
+        //Find each chest of the file which is within the World
+        final boolean[] inWorld = new boolean[fileChests];
+        String prefix = world + "'";
+        for (int fileChest = 1; fileChest < fileChests; fileChest++) {
+            inWorld[fileChest] = CooldownStore.getChestName(fileToChest[fileChest]).startsWith(prefix);
+        }
+        return removeMatching(new Filter() {
+            @Override
+            public boolean matches(int chest, int user, long time) {
+                return user == fileUser && inWorld[chest];
+            }
+        });
+    }
+
+    /**
+     * Returns the loot time of each chest for the given user
+     *
+     * @param user The ID of the user
+     * @return The map of chest IDs to loot times (NO_CHEST for loot times which are not tied to a chest)
+     */
+    @Override
+    public synchronized Map<Integer, Long> getUserTimes(int user) {
+        HashMap<Integer, Long> userTimes = new HashMap<>();
+        int fileUser = getFileUser(user);
+        if (fileUser < 0) {
+            return userTimes;
+        }
+        for (int slot = 0; slot < table.capacity; slot++) {
+            int fileChest = table.chestAt(slot);
+            if (fileChest >= 0 && table.userAt(slot) == fileUser) {
+                userTimes.put(fileToChest[fileChest], table.timeAt(slot));
+            }
+        }
+        return userTimes;
+    }
+
+    /**
+     * Removes loot times which are earlier than the given time.
+     * A small part of the table is looked at each time so that every slot is visited every few seconds
+     *
+     * @param time The earliest loot time which will be kept
+     * @return The number of loot times which were removed
+     */
+    @Override
+    public synchronized int removeExpired(long time) {
+        //A growing table is also copied while it is otherwise idle
+        migrate();
+        int removed = 0;
+        int slots = Math.min(SWEEP_SLOTS, table.capacity);
+        for (int i = 0; i < slots && size > 0; i++) {
+            if (table.chestAt(sweep) >= 0 && table.timeAt(sweep) < time) {
+                //Another entry may be shifted into this slot so it is looked at again
+                removeSlot(sweep);
+                removed++;
+            } else {
+                sweep = (sweep + 1) & table.mask;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every loot time
+     */
+    @Override
+    public synchronized void clear() {
+        if (size == 0) {
+            return;
+        }
+        next = null;
+        finishing = false;
+        growAt = 0;
+        size = 0;
+        sweep = 0;
+        modified = true;
+        try {
+            //Replace the table with an empty one rather than emptying every slot
+            Table empty = Table.create(table.file == file ? alternateFile : file, MIN_CAPACITY);
+            replaceTable(empty);
+        } catch (IOException ex) {
+            //The other file may still be mapped from an earlier growth so empty each slot of the current mapping instead
+            for (int slot = 0; slot < table.capacity; slot++) {
+                table.buffer.putInt(table.offset(slot), 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of loot times
+     *
+     * @return The number of entries
+     */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if there are no loot times
+     *
+     * @return true if the store is empty
+     */
+    @Override
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Reads loot times from the given Properties file and adds them to this store
+     *
+     * @param in The stream of the Properties file
+     * @throws IOException if the stream cannot be read
+     */
+    @Override
+    public void load(InputStream in) throws IOException {
+        CooldownStore store = new CooldownStore();
+        store.load(in);
+        CooldownStore.copy(store, this);
+    }
+
+    /**
+     * Returns a copy of every loot time which may be written from another thread
+     *
+     * @return The Snapshot of this store
+     */
+    @Override
+    public synchronized CooldownStore.Snapshot snapshot() {
+        int[] chests = new int[size];
+        int[] users = new int[size];
+        long[] times = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < table.capacity && count < size; slot++) {
+            int fileChest = table.chestAt(slot);
+            if (fileChest >= 0) {
+                chests[count] = fileToChest[fileChest];
+                users[count] = fileToUser[table.userAt(slot)];
+                times[count] = table.timeAt(slot);
+                count++;
+            }
+        }
+        return CooldownStore.snapshot(chests, users, times, count);
+    }
+
+    /**
+     * Writes the mapping and the dictionary to the disk.
+     * The store is only locked while the dictionary is flushed so loot times may change while the mapping is forced
+     */
+    void force() {
+        MappedByteBuffer mapping;
+        FileOutputStream out;
+        synchronized (this) {
+            try {
+                if (ids != null) {
+                    ids.flush();
+                }
+            } catch (IOException ex) {
+                PhatLoots.logger.log(Level.SEVERE, "Failed to save " + idsFile.getName(), ex);
+            }
+            mapping = table.buffer;
+            out = idsOut;
+            modified = false;
+        }
+        try {
+            if (out != null) {
+                out.getFD().sync();
+            }
+        } catch (IOException ex) {
+            //The dictionary was closed since it was flushed
+        }
+        mapping.force();
+    }
+
+    /**
+     * Forces the mapping to the disk on the I/O thread
+     */
+    void forceLater() {
+        PhatLootsIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                force();
+            }
+        });
+    }
+
+    /**
+     * Closes the dictionary (it is reopened by the next new ID) and forces the mapping to the disk on the I/O thread
+     */
+    synchronized void close() {
+        //A table which has not finished growing is abandoned (the file which it was copied into is not complete)
+        next = null;
+        finishing = false;
+        final MappedByteBuffer mapping = table.buffer;
+        final DataOutputStream out = ids;
+        ids = null;
+        idsOut = null;
+        modified = false;
+        PhatLootsIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException ex) {
+                        PhatLoots.logger.log(Level.SEVERE, "Failed to close " + idsFile.getName(), ex);
+                    }
+                }
+                mapping.force();
+            }
+        });
+    }
+
+    /**
+     * Removes every loot time and deletes the files of this store once they are closed
+     */
+    synchronized void delete() {
+        clear();
+        close();
+        PhatLootsIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                //A file which is still mapped may not be deleted on some systems
+                for (File mappedFile : new File[] {file, alternateFile, idsFile}) {
+                    if (mappedFile.exists() && !mappedFile.delete()) {
+                        PhatLoots.logger.warning("Could not delete " + mappedFile.getName() + " but it no longer holds any loot times");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the dictionary of file IDs, discarding a definition which was only partly written
+     *
+     * @throws IOException if the dictionary cannot be read
+     */
+    private void readIds() throws IOException {
+        if (!idsFile.exists()) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(idsFile.toPath());
+        ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(bais)) {
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    break;
+                }
+                String name = in.readUTF();
+                if (type == CHEST) {
+                    mapChest(fileChests, CooldownStore.internChest(name));
+                } else if (type == USER) {
+                    mapUser(fileUsers, CooldownStore.internUser(name));
+                } else {
+                    break;
+                }
+                valid = bytes.length - bais.available();
+            }
+        } catch (EOFException | UTFDataFormatException ex) {
+            //The last definition was only partly written
+        }
+        if (valid < bytes.length) {
+            try (RandomAccessFile raf = new RandomAccessFile(idsFile, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+    }
+
+    /**
+     * Returns the file ID of the given chest, defining it in the dictionary if it is new
+     *
+     * @param chest The interned ID of the chest
+     * @return The file ID of the chest
+     */
+    private int defineChest(int chest) {
+        int fileChest = getFileChest(chest);
+        if (fileChest < 0) {
+            fileChest = fileChests;
+            appendId(CHEST, CooldownStore.getChestName(chest));
+            mapChest(fileChest, chest);
+        }
+        return fileChest;
+    }
+
+    /**
+     * Returns the file ID of the given user, defining it in the dictionary if it is new
+     *
+     * @param user The interned ID of the user
+     * @return The file ID of the user
+     */
+    private int defineUser(int user) {
+        int fileUser = getFileUser(user);
+        if (fileUser < 0) {
+            fileUser = fileUsers;
+            appendId(USER, CooldownStore.getUserName(user));
+            mapUser(fileUser, user);
+        }
+        return fileUser;
+    }
+
+    /**
+     * Appends a definition to the dictionary
+     *
+     * @param type CHEST or USER
+     * @param name The name which the ID was interned from
+     */
+    private void appendId(int type, String name) {
+        try {
+            if (ids == null) {
+                idsOut = new FileOutputStream(idsFile, true);
+                ids = new DataOutputStream(new BufferedOutputStream(idsOut));
+            }
+            ids.writeByte(type);
+            ids.writeUTF(name);
+        } catch (IOException ex) {
+            PhatLoots.logger.log(Level.SEVERE, "Failed to write to " + idsFile.getName(), ex);
+        }
+    }
+
+    /**
+     * Maps the given file chest ID to the given interned chest ID
+     *
+     * @param fileChest The next file chest ID
+     * @param chest The interned ID of the chest
+     */
+    private void mapChest(int fileChest, int chest) {
+        if (fileChest == fileToChest.length) {
+            fileToChest = Arrays.copyOf(fileToChest, fileChest * 2);
+        }
+        fileToChest[fileChest] = chest;
+        fileChests = fileChest + 1;
+        chestToFile = grow(chestToFile, chest);
+        chestToFile[chest] = fileChest;
+    }
+
+    /**
+     * Maps the given file user ID to the given interned user ID
+     *
+     * @param fileUser The next file user ID
+     * @param user The interned ID of the user
+     */
+    private void mapUser(int fileUser, int user) {
+        if (fileUser == fileToUser.length) {
+            fileToUser = Arrays.copyOf(fileToUser, fileUser * 2);
+        }
+        fileToUser[fileUser] = user;
+        fileUsers = fileUser + 1;
+        userToFile = grow(userToFile, user);
+        userToFile[user] = fileUser;
+    }
+
+    /**
+     * Returns the file ID of the given chest
+     *
+     * @param chest The interned ID of the chest
+     * @return The file ID or -1 if it is not defined
+     */
+    private int getFileChest(int chest) {
+        return chest < chestToFile.length ? chestToFile[chest] : -1;
+    }
+
+    /**
+     * Returns the file ID of the given user
+     *
+     * @param user The interned ID of the user
+     * @return The file ID or -1 if it is not defined
+     */
+    private int getFileUser(int user) {
+        return user < userToFile.length ? userToFile[user] : -1;
+    }
+
+    /**
+     * Returns the given array grown to include the given index (new elements are -1)
+     *
+     * @param array The array of file IDs
+     * @param index The index which must be included
+     * @return The given array or a larger copy of it
+     */
+    private static int[] grow(int[] array, int index) {
+        if (index < array.length) {
+            return array;
+        }
+        int length = Math.max(index + 1, array.length * 2);
+        int[] grown = Arrays.copyOf(array, length);
+        Arrays.fill(grown, array.length, length, -1);
+        return grown;
+    }
+
+    /**
+     * Writes a loot time to the given slot of the table and to the table which it is growing into
+     *
+     * @param slot The slot to write to
+     * @param chest The file ID of the chest
+     * @param user The file ID of the user
+     * @param time The time in milliseconds
+     */
+    private void write(int slot, int chest, int user, long time) {
+        table.write(slot, chest, user, time);
+        if (next != null) {
+            next.put(chest, user, time);
+        }
+    }
+
+    /**
+     * Empties the given slot of the table (and the loot time within the table which it is growing into)
+     *
+     * @param slot The slot to empty
+     */
+    private void removeSlot(int slot) {
+        if (next != null) {
+            next.remove(table.chestAt(slot), table.userAt(slot));
+        }
+        table.removeSlot(slot, next);
+        size--;
+        modified = true;
+    }
+
+    /**
+     * Removes every loot time which matches the given filter
+     *
+     * @param filter The filter of file IDs and times
+     * @return The number of loot times which were removed
+     */
+    private int removeMatching(Filter filter) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < table.capacity) {
+            int chest = table.chestAt(slot);
+            if (chest >= 0 && filter.matches(chest, table.userAt(slot), table.timeAt(slot))) {
+                //Another entry may be shifted into this slot so check it again
+                removeSlot(slot);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Starts growing the table into the other file at twice the capacity
+     */
+    private void startGrowth() {
+        try {
+            next = Table.create(table.file == file ? alternateFile : file, table.capacity * 2);
+            migrated = 0;
+        } catch (IOException ex) {
+            //The other file may still be mapped from an earlier growth
+            PhatLoots.logger.log(Level.SEVERE, "Failed to grow " + file.getName() + ", growing will be tried again later", ex);
+            growAt = size + table.capacity / 16;
+        }
+    }
+
+    /**
+     * Copies the next few slots of the table into the table which it is growing into.
+     * Every change is also written to both tables so each loot time is in the larger table once every slot has been copied
+     */
+    private void migrate() {
+        if (next == null || finishing) {
+            return;
+        }
+        int end = Math.min(migrated + MIGRATE_SLOTS, table.capacity);
+        for (; migrated < end; migrated++) {
+            int chest = table.chestAt(migrated);
+            if (chest >= 0) {
+                next.put(chest, table.userAt(migrated), table.timeAt(migrated));
+            }
+        }
+        if (migrated == table.capacity) {
+            //The larger table is forced before it replaces the table so that it is complete on the disk
+            finishing = true;
+            final Table target = next;
+            PhatLootsIO.execute(new Runnable() {
+                @Override
+                public void run() {
+                    target.buffer.force();
+                    finishGrowth(target);
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces the table with the larger table which it has grown into
+     *
+     * @param target The larger table
+     */
+    private synchronized void finishGrowth(Table target) {
+        if (next != target) {
+            //The table was cleared or has already been replaced
+            return;
+        }
+        next = null;
+        finishing = false;
+        replaceTable(target);
+    }
+
+    /**
+     * Marks the given table as the newest generation and stops using the current table
+     *
+     * @param replacement The table which holds every loot time
+     */
+    private void replaceTable(Table replacement) {
+        replacement.writeHeader(++generation);
+        //The old file is no longer complete so it is not read if it fails to be replaced next time
+        table.buffer.putInt(0, 0);
+        table = replacement;
+        sweep = 0;
+    }
+
+    /**
+     * Returns the generation of the given file
+     *
+     * @param mappedFile The file of a table
+     * @return The generation or -1 if the file does not exist or was not completely written
+     * @throws IOException if the file is not a loot time file
+     */
+    private static int readGeneration(File mappedFile) throws IOException {
+        if (!mappedFile.exists() || mappedFile.length() < HEADER) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(mappedFile))) {
+            int magic = in.readInt();
+            int version = in.readInt();
+            int fileCapacity = in.readInt();
+            int fileGeneration = in.readInt();
+            if (magic == 0) {
+                return -1;
+            }
+            if (magic != MAGIC || version != VERSION || Integer.bitCount(fileCapacity) != 1
+                    || fileCapacity > MAX_CAPACITY || mappedFile.length() < HEADER + (long) fileCapacity * RECORD) {
+                throw new IOException(mappedFile.getName() + " is not a valid loot time file");
+            }
+            return fileGeneration;
+        }
+    }
+
+    /**
+     * Selects loot times by their file IDs and time
+     */
+    private interface Filter {
+        boolean matches(int chest, int user, long time);
+    }
+
+    /**
+     * Persists the store when its PhatLoot is saved.
+     * Changes are not recorded because they have already been made within the mapping
+     */
+    private final class Log implements LootTimesLog {
+        @Override
+        public void put(int chest, int user, long time) {
+        }
+
+        @Override
+        public void remove(int chest, int user) {
+        }
+
+        @Override
+        public void removeChest(int chest) {
+        }
+
+        @Override
+        public void removeUser(int user) {
+        }
+
+        @Override
+        public void removeWorld(String world, int user) {
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        /**
+         * Returns true if the mapping has changed since it was last forced
+         *
+         * @return true if save should be called
+         */
+        @Override
+        public boolean isModified() {
+            synchronized (MappedCooldownStore.this) {
+                return modified;
+            }
+        }
+
+        /**
+         * Forces the mapping to the disk on the I/O thread
+         *
+         * @param store The loot times of the PhatLoot (this store)
+         */
+        @Override
+        public void save(CooldownTable store) {
+            forceLater();
+        }
+
+        /**
+         * Replaces the loot times of this store with those of the given store
+         *
+         * @param store The loot times of the PhatLoot
+         */
+        @Override
+        public void rewrite(CooldownTable store) {
+            if (store != MappedCooldownStore.this) {
+                clear();
+                CooldownStore.copy(store, MappedCooldownStore.this);
+            }
+            forceLater();
+        }
+
+        @Override
+        public void close() {
+            MappedCooldownStore.this.close();
+        }
+
+        @Override
+        public void delete() {
+            MappedCooldownStore.this.delete();
+        }
+    }
+
+    /**
+     * An open addressing table of loot times within a single mapped file
+     */
+    private static final class Table {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final int mask;
+
+        private Table(File file, MappedByteBuffer buffer, int capacity) {
+            this.file = file;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            mask = capacity - 1;
+        }
+
+        /**
+         * Maps an existing file whose header has already been checked
+         *
+         * @param file The file to map
+         * @return The Table of the file
+         * @throws IOException if the file cannot be mapped
+         */
+        private static Table open(File file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(8);
+                int capacity = raf.readInt();
+                return new Table(file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * RECORD), capacity);
+            }
+        }
+
+        /**
+         * Replaces the given file with an empty table which has no header until writeHeader is called
+         *
+         * @param file The file to map
+         * @param capacity The number of slots which must be a power of two
+         * @return The Table of the file
+         * @throws IOException if the file cannot be resized or mapped
+         */
+        private static Table create(File file, int capacity) throws IOException {
+            long length = HEADER + (long) capacity * RECORD;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(0);
+                raf.setLength(length);
+                return new Table(file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length), capacity);
+            }
+        }
+
+        /**
+         * Writes the header which marks the table as complete
+         *
+         * @param generation The generation of the table
+         */
+        private void writeHeader(int generation) {
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, capacity);
+            buffer.putInt(12, generation);
+            buffer.putInt(0, MAGIC);
+        }
+
+        /**
+         * Returns the slot of the given file IDs
+         *
+         * @param chest The file ID of the chest
+         * @param user The file ID of the user
+         * @return The slot or -1 if there is no loot time
+         */
+        private int find(int chest, int user) {
+            if (chest < 0 || user < 0) {
+                return -1;
+            }
+            int slot = home(chest, user);
+            while (true) {
+                int slotChest = chestAt(slot);
+                if (slotChest < 0) {
+                    return -1;
+                }
+                if (slotChest == chest && userAt(slot) == user) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * Returns the first empty slot for the given file IDs
+         *
+         * @param chest The file ID of the chest
+         * @param user The file ID of the user
+         * @return The slot which the loot time should be written to
+         */
+        private int emptySlot(int chest, int user) {
+            int slot = home(chest, user);
+            while (chestAt(slot) >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Returns the preferred slot of the given file IDs
+         *
+         * @param chest The file ID of the chest
+         * @param user The file ID of the user
+         * @return The slot which probing starts from
+         */
+        private int home(int chest, int user) {
+            long hash = ((long) chest << 32 | (user & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ hash >>> 32) & mask;
+        }
+
+        /**
+         * Sets the loot time of the given file IDs
+         *
+         * @param chest The file ID of the chest
+         * @param user The file ID of the user
+         * @param time The time in milliseconds
+         */
+        private void put(int chest, int user, long time) {
+            int slot = find(chest, user);
+            write(slot < 0 ? emptySlot(chest, user) : slot, chest, user, time);
+        }
+
+        /**
+         * Removes the loot time of the given file IDs
+         *
+         * @param chest The file ID of the chest
+         * @param user The file ID of the user
+         */
+        private void remove(int chest, int user) {
+            int slot = find(chest, user);
+            if (slot >= 0) {
+                removeSlot(slot, null);
+            }
+        }
+
+        /**
+         * Empties the given slot and shifts back any following entries which would no longer be found
+         *
+         * @param slot The slot to empty
+         * @param mirror The table which moved entries are also written to (so that a growing table is not missing them) or null
+         */
+        private void removeSlot(int slot, Table mirror) {
+            int hole = slot;
+            int next = (slot + 1) & mask;
+            int chest;
+            while ((chest = chestAt(next)) >= 0) {
+                int user = userAt(next);
+                //Move the entry into the hole if the hole is between its home and its slot
+                if (((next - home(chest, user)) & mask) >= ((next - hole) & mask)) {
+                    long time = timeAt(next);
+                    write(hole, chest, user, time);
+                    if (mirror != null) {
+                        mirror.put(chest, user, time);
+                    }
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            buffer.putInt(offset(hole), 0);
+        }
+
+        /**
+         * Writes a loot time to the given slot
+         *
+         * @param slot The slot to write to
+         * @param chest The file ID of the chest
+         * @param user The file ID of the user
+         * @param time The time in milliseconds
+         */
+        private void write(int slot, int chest, int user, long time) {
+            int offset = offset(slot);
+            buffer.putLong(offset + 8, time);
+            buffer.putInt(offset + 4, user);
+            buffer.putInt(offset, chest + 1);
+        }
+
+        private int offset(int slot) {
+            return HEADER + slot * RECORD;
+        }
+
+        private int chestAt(int slot) {
+            return buffer.getInt(offset(slot)) - 1;
+        }
+
+        private int userAt(int slot) {
+            return buffer.getInt(offset(slot) + 4);
+        }
+
+        private long timeAt(int slot) {
+            return buffer.getLong(offset(slot) + 8);
+        }
+    }
+}
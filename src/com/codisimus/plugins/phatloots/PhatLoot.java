@@ -2,7 +2,8 @@ package com.codisimus.plugins.phatloots;
 
 import com.codisimus.plugins.phatloots.events.*;
 import com.codisimus.plugins.phatloots.loot.*;
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.logging.Level;
 import net.milkbowl.vault.economy.EconomyResponse;
@@ -13,7 +14,6 @@ import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
 import org.bukkit.configuration.serialization.SerializableAs;
 import org.bukkit.enchantments.Enchantment;
@@ -46,6 +46,7 @@ public final class PhatLoot implements ConfigurationSerializable {
 
     public String name; //A unique name for the PhatLoot
     public ArrayList<Loot> lootList; //List of Loot
+    private volatile LootPlan lootPlan; //Compiled from lootList and recompiled after edits
 
     public int days; //Reset time (will never reset if any are negative)
     public int hours;
@@ -56,7 +57,11 @@ public final class PhatLoot implements ConfigurationSerializable {
     public boolean autoLoot;
     public boolean breakAndRespawn;
     private HashSet<PhatLootChest> chests = new HashSet<>(); //Set of Chests linked to this PhatLoot
-    private Properties lootTimes = new Properties(); //PhatLootChest'PlayerName=Year'Day'Hour'Minute'Second
+    private CooldownTable lootTimes = new CooldownStore(); //PhatLootChest'PlayerUUID=Time in milliseconds
+    private LootTimesLog lootTimesLog; //Records each change to lootTimes
+    private int tableVersion; //Incremented whenever the Loot Tables are modified
+    private int savedTableVersion; //The tableVersion which was last written to file
+    private boolean chestsModified; //True if chests have been linked or unlinked since they were last written
 
     /**
      * Constructs a new PhatLoot
@@ -110,17 +115,27 @@ public final class PhatLoot implements ConfigurationSerializable {
             return 0;
         }
 
+        //Apply changes from other servers before reading the local loot time
+        PhatLoots.getCooldowns().applyPending();
+
         //Get the correct timestamp
-        String timeStamp = lootTimes.getProperty(getKey(player, chest));
-        long time = 0;
-        if (timeStamp == null) {
+        long time = lootTimes.get(getChestId(chest), getUserId(player));
+        if (time == CooldownStore.ABSENT) {
             return 0;
         }
+        return getTimeRemaining(time);
+    }
 
-        try {
-            time = Long.parseLong(timeStamp);
-        } catch (NumberFormatException notLong) {
-            PhatLoots.logger.severe("Fixed corrupted time value!");
+    /**
+     * Returns the remaining time until a loot time of the given timestamp resets
+     *
+     * @param time The time in milliseconds that the loot time was set
+     * @return the remaining time or -1 if it never resets
+     */
+    private long getTimeRemaining(long time) {
+        //Return 0 if the reset time is set to 0
+        if (days == 0 && hours == 0 && minutes == 0 && seconds == 0) {
+            return 0;
         }
 
         //Return -1 if the reset time is set to never
@@ -185,7 +200,10 @@ public final class PhatLoot implements ConfigurationSerializable {
             }
         }
 
-        lootTimes.setProperty(getKey(player, chest), String.valueOf(calendar.getTimeInMillis()));
+        int chestId = getChestId(chest);
+        int userId = getUserId(player);
+        storeLootTime(chestId, userId, calendar.getTimeInMillis());
+        PhatLoots.getCooldowns().loot(this, chestId, userId, calendar.getTimeInMillis());
     }
 
     /**
@@ -294,56 +312,9 @@ public final class PhatLoot implements ConfigurationSerializable {
             return flagToBreak;
         }
 
-        //Do money transactions
-        double money = lootBundle.getMoney();
-        if (money > 0) { //Reward
-            if (PhatLoots.econ != null) {
-                EconomyResponse r = PhatLoots.econ.depositPlayer(player.getName(), money);
-                if (r.transactionSuccess() && PhatLootsConfig.moneyLooted != null) {
-                    String amount = PhatLoots.econ.format(money).replace(".00", "");
-                    player.sendMessage(PhatLootsConfig.moneyLooted.replace("<amount>", amount));
-                }
-            } else {
-                player.sendMessage("§6Vault §4is not enabled, so no money can be processed.");
-            }
-        } else if (money < 0) { //Cost
-            money *= -1;
-            if (PhatLoots.econ != null) {
-                EconomyResponse r = PhatLoots.econ.withdrawPlayer(player.getName(), money);
-                String amount = PhatLoots.econ.format(money).replace(".00", "");
-                if (r.transactionSuccess()) {
-                    if (PhatLootsConfig.moneyCharged != null) {
-                        player.sendMessage(PhatLootsConfig.moneyCharged.replace("<amount>", amount));
-                    }
-                } else {
-                    if (PhatLootsConfig.insufficientFunds != null) {
-                        player.sendMessage(PhatLootsConfig.insufficientFunds.replace("<amount>", amount));
-                    }
-                    return flagToBreak;
-                }
-            } else {
-                //Don't let them loot without paying
-                player.sendMessage("§6Vault §4is not enabled, so no money can be processed.");
-                return flagToBreak;
-            }
-        }
-
-        //Give the looted experience
-        if (lootBundle.getExp() > 0) {
-            player.giveExp(lootBundle.getExp());
-            if (PhatLootsConfig.experienceLooted != null) {
-                player.sendMessage(PhatLootsConfig.experienceLooted.replace("<amount>", String.valueOf(lootBundle.getExp())));
-            }
-        }
-
-        //Execute each command
-        for (CommandLoot command : lootBundle.getCommandList()) {
-            command.execute(player);
-        }
-
-        //Send each message
-        for (String message : lootBundle.getMessageList()) {
-            player.sendMessage(message);
+        //Give everything but the items
+        if (!giveRewards(player, lootBundle)) {
+            return flagToBreak;
         }
 
         //Give all of the items
@@ -451,6 +422,69 @@ public final class PhatLoot implements ConfigurationSerializable {
         return flagToBreak;
     }
 
+    /**
+     * Gives the money, experience, commands and messages of the LootBundle to the given Player.
+     * Nothing is given if the Player cannot afford the cost of the loot
+     *
+     * @param player The Player who is looting
+     * @param lootBundle The loot that was rolled for
+     * @return false if the Player could not pay for the loot
+     */
+    boolean giveRewards(Player player, LootBundle lootBundle) {
+        //Do money transactions
+        double money = lootBundle.getMoney();
+        if (money > 0) { //Reward
+            if (PhatLoots.econ != null) {
+                EconomyResponse r = PhatLoots.econ.depositPlayer(player.getName(), money);
+                if (r.transactionSuccess() && PhatLootsConfig.moneyLooted != null) {
+                    String amount = PhatLoots.econ.format(money).replace(".00", "");
+                    player.sendMessage(PhatLootsConfig.moneyLooted.replace("<amount>", amount));
+                }
+            } else {
+                player.sendMessage("§6Vault §4is not enabled, so no money can be processed.");
+            }
+        } else if (money < 0) { //Cost
+            money *= -1;
+            if (PhatLoots.econ != null) {
+                EconomyResponse r = PhatLoots.econ.withdrawPlayer(player.getName(), money);
+                String amount = PhatLoots.econ.format(money).replace(".00", "");
+                if (r.transactionSuccess()) {
+                    if (PhatLootsConfig.moneyCharged != null) {
+                        player.sendMessage(PhatLootsConfig.moneyCharged.replace("<amount>", amount));
+                    }
+                } else {
+                    if (PhatLootsConfig.insufficientFunds != null) {
+                        player.sendMessage(PhatLootsConfig.insufficientFunds.replace("<amount>", amount));
+                    }
+                    return false;
+                }
+            } else {
+                //Don't let them loot without paying
+                player.sendMessage("§6Vault §4is not enabled, so no money can be processed.");
+                return false;
+            }
+        }
+
+        //Give the looted experience
+        if (lootBundle.getExp() > 0) {
+            player.giveExp(lootBundle.getExp());
+            if (PhatLootsConfig.experienceLooted != null) {
+                player.sendMessage(PhatLootsConfig.experienceLooted.replace("<amount>", String.valueOf(lootBundle.getExp())));
+            }
+        }
+
+        //Execute each command
+        for (CommandLoot command : lootBundle.getCommandList()) {
+            command.execute(player);
+        }
+
+        //Send each message
+        for (String message : lootBundle.getMessageList()) {
+            player.sendMessage(message);
+        }
+        return true;
+    }
+
     /**
      * Rolls for loot to add to the given mob drops
      *
@@ -716,26 +750,47 @@ public final class PhatLoot implements ConfigurationSerializable {
      * @return The Loot that has been rolled for
      */
     public LootBundle rollForLoot(LootBundle lootBundle, double lootingBonus) {
-        for (Loot loot : lootList) {
-            if (loot.rollForLoot(lootingBonus)) {
-                loot.getLoot(lootBundle, lootingBonus);
-            }
+        return getLootPlan().roll(lootBundle, lootingBonus);
+    }
+
+    /**
+     * Returns the compiled LootPlan of this PhatLoot.
+     * The plan is recompiled if any loot table has been edited since it was compiled
+     *
+     * @return The LootPlan of the current Loot
+     */
+    public LootPlan getLootPlan() {
+        LootPlan current = lootPlan;
+        int version = Loot.getTableVersion();
+        if (current == null || current.getVersion() != version) {
+            current = new LootPlan(lootList, version);
+            lootPlan = current;
         }
-        return lootBundle;
+        return current;
     }
 
     /**
-     * Returns the key for the given Player and PhatLootChest
+     * Returns the ID of the PhatLootChest in the CooldownStore
      *
-     * @param player The Player or null if global
      * @param chest The PhatLootChest which may be null
-     * @return the key that represents this player and chest
+     * @return the ID of the chest
      */
-    private String getKey(Player player, PhatLootChest chest) {
-        String user = getUser(player);
+    private int getChestId(PhatLootChest chest) {
         return chest == null
-               ? user
-               : chest.toString() + "'" + user;
+               ? CooldownStore.NO_CHEST
+               : chest.getCooldownId();
+    }
+
+    /**
+     * Returns the ID of the user in the CooldownStore
+     *
+     * @param player The Player or null if global
+     * @return the ID of the user
+     */
+    private int getUserId(Player player) {
+        return global || player == null
+               ? CooldownStore.GLOBAL
+               : CooldownStore.internUser(player.getUniqueId().toString());
     }
 
     /**
@@ -784,7 +839,10 @@ public final class PhatLoot implements ConfigurationSerializable {
      * @param chest The given PhatLootChest
      */
     public void addChest(PhatLootChest chest) {
-        chests.add(chest);
+        if (chests.add(chest)) {
+            chest.link(this);
+            chestsModified = true;
+        }
     }
 
     /**
@@ -802,14 +860,33 @@ public final class PhatLoot implements ConfigurationSerializable {
      * @param chest The given PhatLootChest
      */
     public void removeChest(PhatLootChest chest) {
-        chests.remove(chest);
+        if (chests.remove(chest)) {
+            chest.unlink(this);
+            chestsModified = true;
+        }
     }
 
     /**
      * Removes all PhatLootChests that are linked to this PhatLoot
      */
     public void removeChests() {
-        chests.clear();
+        if (!chests.isEmpty()) {
+            unlinkChests();
+            chests.clear();
+            chestsModified = true;
+        }
+    }
+
+    /**
+     * Removes this PhatLoot from the linked PhatLoots of each of its chests (the chests of this PhatLoot are kept).
+     * This is called when the PhatLoot is deleted or reloaded
+     */
+    void unlinkChests() {
+        for (PhatLootChest chest : chests) {
+            if (chest != null) {
+                chest.unlink(this);
+            }
+        }
     }
 
     /**
@@ -826,6 +903,8 @@ public final class PhatLoot implements ConfigurationSerializable {
             }
         }
         lootList.add(target);
+        Loot.tableModified();
+        setModified();
         return true;
     }
 
@@ -841,12 +920,30 @@ public final class PhatLoot implements ConfigurationSerializable {
         while (itr.hasNext()) {
             if (itr.next().equals(target)) {
                 itr.remove();
+                Loot.tableModified();
+                setModified();
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Marks the Loot Tables of this PhatLoot as modified so that they are written by the next save
+     */
+    public void setModified() {
+        tableVersion++;
+    }
+
+    /**
+     * Returns true if the Loot Tables have been modified since they were last written
+     *
+     * @return true if the PhatLoot should be saved
+     */
+    public boolean isModified() {
+        return tableVersion != savedTableVersion;
+    }
+
     /**
      * Returns the collection of the given name
      *
@@ -876,15 +973,13 @@ public final class PhatLoot implements ConfigurationSerializable {
     public void reset(Block block) {
         if (block == null) {
             //Reset all PhatLootChests
-            lootTimes.clear();
+            clearLootTimes();
+            PhatLoots.getCooldowns().resetAll(this);
         } else {
             //Find the PhatLootChest of the given Block and reset it
-            String chest = PhatLootChest.getChest(block).toString();
-            for (String key : lootTimes.stringPropertyNames()) {
-                if (key.startsWith(chest)) {
-                    lootTimes.remove(key);
-                }
-            }
+            int chestId = PhatLootChest.getChest(block).getCooldownId();
+            removeLootTimes(chestId);
+            PhatLoots.getCooldowns().resetChest(this, chestId);
         }
     }
 
@@ -894,24 +989,105 @@ public final class PhatLoot implements ConfigurationSerializable {
      * @param world The World whose loot times are to be reset
      */
     public void resetForWorld(World world) {
-        for (PhatLootChest chest : chests) {
-            if (chest.isInWorld(world)) {
-                lootTimes.remove(chest.toString() + "'" + global);
-            }
-        }
+        removeLootTimes(world.getName(), CooldownStore.GLOBAL);
+        PhatLoots.getCooldowns().resetWorld(this, world.getName());
     }
 
     /**
      * Resets the player loot times for all PhatLootChests of this PhatLoot.
+     * Loot times which are not tied to a chest (such as mob loot) are reset as well
      *
      * @param player The Player whose loot times are to be reset
      */
     public void resetForPlayer(Player player) {
-        UUID playerUUID = player.getUniqueId();
-        for (PhatLootChest chest : chests) {
-            String key = chest.toString() + "'" + playerUUID;
-            lootTimes.remove(key);
+        int userId = CooldownStore.internUser(player.getUniqueId().toString());
+        removeUserLootTimes(userId);
+        PhatLoots.getCooldowns().resetUser(this, userId);
+    }
+
+    /**
+     * Sets a loot time without sharing it with other servers.
+     * A later loot time is never replaced so that loot times from other servers may arrive in any order
+     *
+     * @param chest The ID of the chest
+     * @param user The ID of the user
+     * @param time The time in milliseconds
+     */
+    void storeLootTime(int chest, int user, long time) {
+        long current = lootTimes.get(chest, user);
+        if (current != CooldownStore.ABSENT && current > time) {
+            return;
+        }
+        lootTimes.put(chest, user, time);
+        getLootTimesLog().put(chest, user, time);
+    }
+
+    /**
+     * Removes every loot time of a chest without sharing the reset with other servers
+     *
+     * @param chest The ID of the chest
+     */
+    void removeLootTimes(int chest) {
+        lootTimes.removeChest(chest);
+        getLootTimesLog().removeChest(chest);
+    }
+
+    /**
+     * Removes the loot times of a user for every chest within a World without sharing the reset with other servers
+     *
+     * @param world The name of the World
+     * @param user The ID of the user
+     */
+    void removeLootTimes(String world, int user) {
+        lootTimes.removeWorld(world, user);
+        getLootTimesLog().removeWorld(world, user);
+    }
+
+    /**
+     * Removes every loot time of a user without sharing the reset with other servers
+     *
+     * @param user The ID of the user
+     */
+    void removeUserLootTimes(int user) {
+        lootTimes.removeUser(user);
+        getLootTimesLog().removeUser(user);
+    }
+
+    /**
+     * Removes every loot time without sharing the reset with other servers
+     */
+    void clearLootTimes() {
+        lootTimes.clear();
+        getLootTimesLog().clear();
+    }
+
+    /**
+     * Returns the remaining time of each PhatLootChest which is cooling down for the given Player.
+     * Loot times which are not tied to a chest (such as mob loot) are mapped to null
+     *
+     * @param player The given Player
+     * @return The remaining time of each chest (-1 if it never resets)
+     */
+    public Map<PhatLootChest, Long> getCooldowns(Player player) {
+        PhatLoots.getCooldowns().applyPending();
+        HashMap<PhatLootChest, Long> cooldowns = new HashMap<>();
+        for (Map.Entry<Integer, Long> entry : lootTimes.getUserTimes(getUserId(player)).entrySet()) {
+            long time = getTimeRemaining(entry.getValue());
+            if (time == 0) {
+                continue;
+            }
+            int id = entry.getKey();
+            if (id == CooldownStore.NO_CHEST) {
+                cooldowns.put(null, time);
+            } else {
+                //The chest is skipped if its World is not loaded
+                PhatLootChest chest = PhatLootChest.getChest(CooldownStore.getChestName(id).split("'"));
+                if (chest != null) {
+                    cooldowns.put(chest, time);
+                }
+            }
         }
+        return cooldowns;
     }
 
     /**
@@ -923,7 +1099,9 @@ public final class PhatLoot implements ConfigurationSerializable {
         //Check if the reset time is 0 seconds
         if (days == 0 && hours == 0 && minutes == 0 && seconds == 0) {
             //Reset the PhatLoot because all times have cooled down
-            reset(block);
+            if (block != null || !lootTimes.isEmpty()) {
+                reset(block);
+            }
             return;
         }
 
@@ -933,20 +1111,6 @@ public final class PhatLoot implements ConfigurationSerializable {
             return;
         }
 
-        Set<String> keys; //The Set of all keys to check
-
-        if (block == null) { //Add all keys
-            keys = lootTimes.stringPropertyNames();
-        } else { //Add each key that starts with the chest location
-            keys = new HashSet();
-            String chest = PhatLootChest.getChest(block).toString();
-            for (String key : lootTimes.stringPropertyNames()) {
-                if (key.startsWith(chest)) {
-                    keys.add(key);
-                }
-            }
-        }
-
         //Calculate the latest timestamp that would have reset by now
         long time = System.currentTimeMillis()
                     - days * DateUtils.MILLIS_PER_DAY
@@ -954,23 +1118,26 @@ public final class PhatLoot implements ConfigurationSerializable {
                     - minutes * DateUtils.MILLIS_PER_MINUTE
                     - seconds * DateUtils.MILLIS_PER_SECOND;
 
-        //Remove each key whose value is less than the calculated time
-        for (String key : keys) {
-            if (Long.parseLong(lootTimes.getProperty(key)) < time) {
-                lootTimes.remove(key);
-            }
+        //Remove each loot time that is less than the calculated time
+        if (block == null) {
+            //Only the expired loot times are looked at
+            lootTimes.removeExpired(time);
+        } else {
+            lootTimes.removeOlderThan(PhatLootChest.getChest(block).getCooldownId(), time);
         }
     }
 
     /** Save/Load Methods **/
 
     /**
-     * Saves all data of the PhatLoot
+     * Saves all data of the PhatLoot which has changed since it was last written
      */
     public void saveAll() {
-        save();
+        saveIfModified();
         saveLootTimes();
-        saveChests();
+        if (chestsModified) {
+            saveChests();
+        }
     }
 
     /**
@@ -978,84 +1145,116 @@ public final class PhatLoot implements ConfigurationSerializable {
      * If there is an old file it is over written
      */
     public void saveLootTimes() {
-        //Don't save an empty file
-        if (lootTimes.isEmpty()) {
+        //Changes are already recorded in the log so only the log needs to be written
+        LootTimesLog log = lootTimesLog;
+        if (log == null || !log.isModified()) {
+            //The Loot times have not changed since they were last written
             return;
         }
-
-        File file = new File(PhatLoots.dataFolder, "LootTimes" + File.separator + name + ".properties");
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            lootTimes.store(fos, null);
-        } catch (IOException ex) {
-            PhatLoots.logger.log(Level.SEVERE, "Save Failed!", ex);
-        }
+        log.save(lootTimes);
     }
 
     /**
      * Reads Loot times of the PhatLoot from file
      */
     public void loadLootTimes() {
-        File file = new File(PhatLoots.dataFolder, "LootTimes" + File.separator + name + ".properties");
-        if (!file.exists()) {
-            return;
-        }
-        try (FileInputStream fis = new FileInputStream(file)) {
-            lootTimes.load(fis);
-        } catch (IOException ex) {
-            PhatLoots.logger.log(Level.SEVERE, "Load Failed!", ex);
-        }
+        lootTimesLog = openLootTimes();
         clean(null);
     }
 
     /**
-     * Writes the Chest Locations of the PhatLoot to file.
-     * If there is an old file it is over written
+     * Closes the log of Loot times (it is reopened if the Loot times change again)
      */
-    public void saveChests() {
-        File file = new File(PhatLoots.dataFolder, "Chests" + File.separator + name + ".txt");
+    void closeLootTimes() {
+        if (lootTimesLog != null) {
+            lootTimesLog.close();
+        }
+    }
 
-        //Don't save an empty file
-        if (chests.isEmpty()) {
-            //Delete the pre-existing file
-            if (file.exists()) {
-                file.delete();
-            }
-            return;
+    /**
+     * Deletes every Loot time file of the PhatLoot
+     */
+    void deleteLootTimes() {
+        getLootTimesLog().delete();
+    }
+
+    /**
+     * Returns the log which records each change to the Loot times
+     *
+     * @return The LootTimesLog of this PhatLoot
+     */
+    private LootTimesLog getLootTimesLog() {
+        if (lootTimesLog == null) {
+            lootTimesLog = openLootTimes();
         }
+        return lootTimesLog;
+    }
 
-        try (FileWriter fWriter = new FileWriter(file)) {
-            try (PrintWriter pWriter = new PrintWriter(fWriter)) {
-                for (PhatLootChest chest : getChests()) {
-                    pWriter.println(chest.toString());
+    /**
+     * Opens the Loot times of the PhatLoot from either its mapped file or the StorageBackend.
+     * Loot times are moved between the two when the PhatLoot is added to or removed from MappedLootTimes
+     *
+     * @return The LootTimesLog of this PhatLoot
+     */
+    private LootTimesLog openLootTimes() {
+        File file = new File(PhatLoots.dataFolder, "LootTimes" + File.separator + name + MappedCooldownStore.EXTENSION);
+        if (PhatLootsConfig.mappedLootTimes.contains(name)) {
+            try {
+                MappedCooldownStore mapped = new MappedCooldownStore(file);
+                if (mapped.isEmpty()) {
+                    //Move the Loot times from the StorageBackend into the mapped file
+                    LootTimesLog log = PhatLoots.getStorage().openLootTimes(name, mapped);
+                    mapped.force();
+                    log.delete();
                 }
+                lootTimes = mapped;
+                return mapped.getLog();
+            } catch (IOException ex) {
+                PhatLoots.logger.log(Level.SEVERE, "Could not map the Loot times of PhatLoot " + name, ex);
+            }
+        } else if (MappedCooldownStore.exists(file)) {
+            //Move the Loot times from the mapped file back to the StorageBackend
+            LootTimesLog log = PhatLoots.getStorage().openLootTimes(name, lootTimes);
+            try {
+                MappedCooldownStore mapped = new MappedCooldownStore(file);
+                CooldownStore.copy(mapped, lootTimes);
+                log.rewrite(lootTimes);
+                mapped.delete();
+            } catch (IOException ex) {
+                PhatLoots.logger.log(Level.SEVERE, "Could not read the mapped Loot times of PhatLoot " + name, ex);
             }
-        } catch (IOException ex) {
-            PhatLoots.logger.log(Level.SEVERE, "Save Failed!", ex);
+            return log;
+        }
+        return PhatLoots.getStorage().openLootTimes(name, lootTimes);
+    }
+
+    /**
+     * Writes the Chest Locations of the PhatLoot to file.
+     * If there is an old file it is over written
+     */
+    public void saveChests() {
+        chestsModified = false;
+
+        //Capture each chest location so that the I/O thread may write them
+        ArrayList<String> lines = new ArrayList<>(chests.size());
+        for (PhatLootChest chest : getChests()) {
+            lines.add(chest.toString());
         }
+        PhatLoots.getStorage().saveChests(name, lines);
     }
 
     /**
      * Reads Chest Locations of the PhatLoot from file
      */
     public final void loadChests() {
-        File file = new File(PhatLoots.dataFolder, "Chests" + File.separator + name + ".txt");
-        if (!file.exists()) {
-            return;
-        }
-        try (Scanner scanner = new Scanner(file)) {
-            //Each line of the file is a new PhatLootChest
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] split = line.split("'");
-                if (split.length == 4) {
-                    chests.add(PhatLootChest.getChest(split));
-                } else {
-                    PhatLoots.logger.severe("Invalid chest data for PhatLoot: " + name);
-                    PhatLoots.logger.severe("Failed line of data: " + line);
-                }
+        //Each record is a new PhatLootChest
+        for (String[] split : PhatLoots.getStorage().loadChests(name)) {
+            //The Block is not read until its chunk is loaded
+            PhatLootChest chest = PhatLootChest.loadChest(split);
+            chests.add(chest);
+            if (chest != null) {
+                chest.link(this);
             }
-        } catch (IOException ex) {
-            PhatLoots.logger.log(Level.SEVERE, "Load Failed!", ex);
         }
     }
 
@@ -1064,18 +1263,32 @@ public final class PhatLoot implements ConfigurationSerializable {
      * If there is an old file it is over written
      */
     public void save() {
-        //Create a new config and populate it with this PhatLoot's information
-        YamlConfiguration config = new YamlConfiguration();
-        config.set(name, this);
-
-        //Save the config with UTF-8 encoding
-        File file = new File(PhatLoots.dataFolder, "LootTables" + File.separator + name + ".yml");
-        String data = config.saveToString();
-        try (OutputStreamWriter out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
-            out.write(data, 0, data.length());
-            out.flush();
-        } catch (IOException ex) {
-            PhatLoots.logger.log(Level.SEVERE, "Could not save PhatLoot " + name, ex);
+        //Capture this PhatLoot's information so that the I/O thread may write it
+        savedTableVersion = tableVersion;
+        PhatLoots.getStorage().saveLootTable(name, PhatLootsIO.snapshot(this));
+    }
+
+    /**
+     * Writes all data of the PhatLoot to the current StorageBackend (after its data was loaded from another one)
+     */
+    void rewriteAll() {
+        save();
+        saveChests();
+        if (lootTimes instanceof MappedCooldownStore) {
+            //Mapped Loot times are not kept by the StorageBackend
+            return;
+        }
+        closeLootTimes();
+        lootTimesLog = PhatLoots.getStorage().openLootTimes(name, lootTimes);
+        lootTimesLog.rewrite(lootTimes);
+    }
+
+    /**
+     * Writes the Loot Tables of the PhatLoot to file if they have been modified since they were last written
+     */
+    public void saveIfModified() {
+        if (isModified()) {
+            save();
         }
     }
 
@@ -1136,6 +1349,7 @@ public final class PhatLoot implements ConfigurationSerializable {
                 int moneyLower = (Integer) nestedMap.get(currentLine = "Lower");
                 int moneyUpper = (Integer) nestedMap.get(currentLine = "Upper");
                 lootList.add(new Money(moneyLower, moneyUpper));
+                tableVersion++; //Rewrite the file in the current format
             }
 
             if (map.containsKey("Exp")) {
@@ -1143,6 +1357,7 @@ public final class PhatLoot implements ConfigurationSerializable {
                 int expLower = (Integer) nestedMap.get(currentLine = "Lower");
                 int expUpper = (Integer) nestedMap.get(currentLine = "Upper");
                 lootList.add(new Experience(expLower, expUpper));
+                tableVersion++; //Rewrite the file in the current format
             }
         } catch (Exception ex) {
             //Print debug messages
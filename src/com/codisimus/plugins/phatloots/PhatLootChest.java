@@ -31,7 +31,7 @@ public class PhatLootChest {
         Material.REDSTONE_LAMP_ON, Material.REDSTONE_TORCH_ON,
         Material.DIODE_BLOCK_ON, Material.PISTON_BASE
     );
-    private static HashMap<String, PhatLootChest> chests = new HashMap<>(); //Chest Location -> PhatLootChest
+    private static final BlockFace[] SIDES = { BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST };
     static HashSet<PhatLootChest> chestsToRespawn = new HashSet<>();
     public static HashMap<UUID, PhatLootChest> openPhatLootChests = new HashMap<>(); //Player -> Open PhatLootChest
     static boolean useBreakAndRepawn;
@@ -41,6 +41,11 @@ public class PhatLootChest {
     private String world;
     private int x, y, z;
     private boolean isDispenser;
+    private boolean resolved; //True once the Block of this chest has been read (which requires its chunk to be loaded)
+    private int cooldownId = -1; //Interned the first time that a loot time is checked
+    private final ArrayList<PhatLoot> linkedPhatLoots = new ArrayList<>(1); //PhatLoots which this chest is linked to
+    private boolean paired; //True if this is the left side of a double chest
+    private int pairX, pairZ; //The location of the other half of a double chest (found when the chest is linked)
     private BlockState state;
     private BlockState otherHalfState;
 
@@ -59,10 +64,12 @@ public class PhatLootChest {
         case DROPPER:
             isDispenser = true;
         }
+        resolved = true;
     }
 
     /**
-     * Constructs a new PhatLootChest with the given Block Location data
+     * Constructs a new PhatLootChest with the given Block Location data.
+     * The Block is not read until its chunk is loaded so the World does not need to be loaded
      *
      * @param world The name of the World
      * @param x The x-coordinate of the Block
@@ -74,18 +81,6 @@ public class PhatLootChest {
         this.x = x;
         this.y = y;
         this.z = z;
-        World w = Bukkit.getWorld(world);
-        if (w == null) { //The world is not currently loaded
-            PhatLoots.logger.warning("The world '" + world + "' is not currently loaded, all linked chests in this world are being unlinked.");
-            PhatLoots.logger.warning("THIS CHEST UNLINKING IS PERMANANT IF YOU LINK/UNLINK ANY OTHER CHESTS IN THIS PHATLOOT!");
-        } else {
-            Block block = w.getBlockAt(x, y, z);
-            switch (block.getType()) {
-            case DISPENSER:
-            case DROPPER:
-                isDispenser = true;
-            }
-        }
     }
 
     /**
@@ -95,15 +90,21 @@ public class PhatLootChest {
      * @return The found or created PhatLootChest
      */
     public static PhatLootChest getChest(Block block) {
-        block = PhatLootsUtil.getLeftSide(block);
-        String key = toString(block);
-        if (chests.containsKey(key)) {
-            return chests.get(key);
-        } else {
-            PhatLootChest chest = new PhatLootChest(block);
-            chests.put(key, chest);
-            return chest;
+        //Either half of a linked chest is found without reading the BlockState
+        int world = ChestRegistry.internWorld(block.getWorld().getName());
+        PhatLootChest chest = ChestRegistry.getLinked(world, block.getX(), block.getY(), block.getZ());
+        if (chest == null) {
+            block = PhatLootsUtil.getLeftSide(block);
+            chest = ChestRegistry.get(world, block.getX(), block.getY(), block.getZ());
+            if (chest == null) {
+                chest = new PhatLootChest(block);
+                ChestRegistry.put(world, block.getX(), block.getY(), block.getZ(), chest);
+            }
         }
+
+        //The chest may not have been read since it was loaded from storage
+        chest.resolve();
+        return chest;
     }
 
     /**
@@ -119,9 +120,9 @@ public class PhatLootChest {
         World w = Bukkit.getWorld(world);
         if (w == null) {
             return null;
-        } else {
-            return getChest(w.getBlockAt(x, y, z));
         }
+        PhatLootChest chest = ChestRegistry.get(ChestRegistry.getWorldId(world), x, y, z);
+        return chest == null ? getChest(w.getBlockAt(x, y, z)) : chest;
     }
 
     /**
@@ -138,13 +139,110 @@ public class PhatLootChest {
         }
     }
 
+    /**
+     * Returns the PhatLootChest with the given Block Location data without reading the Block.
+     * This is used when loading chests so that their chunks (and Worlds) do not need to be loaded
+     *
+     * @param data The data in the form [world, x, y, z]
+     * @return The found or created PhatLootChest or null if the data is invalid
+     */
+    static PhatLootChest loadChest(String[] data) {
+        int x, y, z;
+        try {
+            x = Integer.parseInt(data[1]);
+            y = Integer.parseInt(data[2]);
+            z = Integer.parseInt(data[3]);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        int world = ChestRegistry.internWorld(data[0]);
+        PhatLootChest chest = ChestRegistry.get(world, x, y, z);
+        if (chest == null) {
+            chest = new PhatLootChest(data[0], x, y, z);
+            ChestRegistry.put(world, x, y, z, chest);
+        }
+        return chest;
+    }
+
+    /**
+     * Reads each PhatLootChest of the given chunk which has not been read yet.
+     * Chests of the neighboring chunks are also checked because a double chest may cross a chunk border
+     *
+     * @param chunk The Chunk which was loaded
+     */
+    public static void resolveChests(Chunk chunk) {
+        int world = ChestRegistry.getWorldId(chunk.getWorld().getName());
+        if (world < 0) {
+            return;
+        }
+        ArrayList<PhatLootChest> chestList = new ArrayList<>();
+        ChestRegistry.getChunk(world, chunk.getX(), chunk.getZ(), chestList);
+        ChestRegistry.getChunk(world, chunk.getX() + 1, chunk.getZ(), chestList);
+        ChestRegistry.getChunk(world, chunk.getX() - 1, chunk.getZ(), chestList);
+        ChestRegistry.getChunk(world, chunk.getX(), chunk.getZ() + 1, chestList);
+        ChestRegistry.getChunk(world, chunk.getX(), chunk.getZ() - 1, chestList);
+        for (PhatLootChest chest : chestList) {
+            chest.resolve();
+        }
+    }
+
+    /**
+     * Reads each PhatLootChest within the loaded chunks of the given World
+     *
+     * @param world The World which was loaded
+     */
+    public static void resolveChests(World world) {
+        if (ChestRegistry.getWorldId(world.getName()) < 0) {
+            return;
+        }
+        for (Chunk chunk : world.getLoadedChunks()) {
+            resolveChests(chunk);
+        }
+    }
+
     /**
      * Returns a collection of all linked chests
      *
      * @return A collection of all PhatLootChests
      */
     public static Collection<PhatLootChest> getChests() {
-        return chests.values();
+        ArrayList<PhatLootChest> chestList = new ArrayList<>(ChestRegistry.size());
+        ChestRegistry.getAll(chestList);
+        return chestList;
+    }
+
+    /**
+     * Returns each PhatLootChest within the given chunk
+     *
+     * @param world The World of the chunk
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkZ The z-coordinate of the chunk
+     * @return A list of the PhatLootChests within the chunk
+     */
+    public static List<PhatLootChest> getChests(World world, int chunkX, int chunkZ) {
+        ArrayList<PhatLootChest> chestList = new ArrayList<>();
+        ChestRegistry.getChunk(ChestRegistry.getWorldId(world.getName()), chunkX, chunkZ, chestList);
+        return chestList;
+    }
+
+    /**
+     * Returns each PhatLootChest within the given radius of the given Location, nearest first
+     *
+     * @param location The center of the search
+     * @param radius The maximum distance (in blocks) from the center
+     * @return A list of the PhatLootChests within the radius
+     */
+    public static List<PhatLootChest> getChestsNear(final Location location, int radius) {
+        ArrayList<PhatLootChest> chestList = new ArrayList<>();
+        ChestRegistry.getNear(ChestRegistry.getWorldId(location.getWorld().getName()),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ(), radius, chestList);
+        Collections.sort(chestList, new Comparator<PhatLootChest>() {
+            @Override
+            public int compare(PhatLootChest a, PhatLootChest b) {
+                return Double.compare(a.distanceSquared(location), b.distanceSquared(location));
+            }
+        });
+        return chestList;
     }
 
     /**
@@ -154,8 +252,34 @@ public class PhatLootChest {
      * @return true if the given Block is linked to a PhatLoot
      */
     public static boolean isPhatLootChest(Block block) {
-        String key = toString(PhatLootsUtil.getLeftSide(block));
-        return chests.containsKey(key);
+        int world = ChestRegistry.getWorldId(block.getWorld().getName());
+        if (world < 0) {
+            //There are no PhatLootChests in this World
+            return false;
+        }
+        int x = block.getX();
+        int y = block.getY();
+        int z = block.getZ();
+        if (ChestRegistry.getLinked(world, x, y, z) != null) {
+            return true;
+        }
+
+        //The BlockState is only read if this Block or a neighboring Block is a PhatLootChest
+        switch (block.getType()) {
+        case TRAPPED_CHEST:
+        case CHEST:
+            if (ChestRegistry.get(world, x, y, z) == null
+                    && ChestRegistry.get(world, x + 1, y, z) == null
+                    && ChestRegistry.get(world, x - 1, y, z) == null
+                    && ChestRegistry.get(world, x, y, z + 1) == null
+                    && ChestRegistry.get(world, x, y, z - 1) == null) {
+                return false;
+            }
+            block = PhatLootsUtil.getLeftSide(block);
+            return ChestRegistry.get(world, block.getX(), block.getY(), block.getZ()) != null;
+        default:
+            return ChestRegistry.get(world, x, y, z) != null;
+        }
     }
 
     /**
@@ -164,9 +288,59 @@ public class PhatLootChest {
      * @return true if the PhatLootChest is a Dispenser or Dropper
      */
     public boolean isDispenser() {
+        resolve();
         return isDispenser;
     }
 
+    /**
+     * Returns the name of the World that this Chest is in
+     *
+     * @return The name of the World
+     */
+    public String getWorldName() {
+        return world;
+    }
+
+    /**
+     * Returns the x-coordinate of this Chest
+     *
+     * @return The x-coordinate of the Block
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y-coordinate of this Chest
+     *
+     * @return The y-coordinate of the Block
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the z-coordinate of this Chest
+     *
+     * @return The z-coordinate of the Block
+     */
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Returns the squared distance between the center of this Chest and the given Location
+     *
+     * @param location The given Location
+     * @return The distance squared
+     */
+    public double distanceSquared(Location location) {
+        double dx = x + 0.5 - location.getX();
+        double dy = y + 0.5 - location.getY();
+        double dz = z + 0.5 - location.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
     /**
      * Returns the Block that this Chest Represents
      *
@@ -192,13 +366,119 @@ public class PhatLootChest {
      * @return a list of PhatLoots linked to the chest
      */
     public LinkedList<PhatLoot> getLinkedPhatLoots() {
-        LinkedList<PhatLoot> phatLoots = new LinkedList<>();
-        for (PhatLoot phatLoot : PhatLoots.getPhatLoots()) {
-            if (phatLoot.containsChest(this)) {
-                phatLoots.add(phatLoot);
+        return new LinkedList<>(linkedPhatLoots);
+    }
+
+    /**
+     * Records that the given PhatLoot was linked to this PhatLootChest.
+     * This is called by PhatLoot when the chest is added to it
+     *
+     * @param phatLoot The linked PhatLoot
+     */
+    void link(PhatLoot phatLoot) {
+        if (linkedPhatLoots.contains(phatLoot)) {
+            return;
+        }
+        linkedPhatLoots.add(phatLoot);
+        if (linkedPhatLoots.size() == 1) {
+            addLinkedPosition();
+        }
+    }
+
+    /**
+     * Records that the given PhatLoot was unlinked from this PhatLootChest.
+     * This is called by PhatLoot when the chest is removed from it
+     *
+     * @param phatLoot The unlinked PhatLoot
+     */
+    void unlink(PhatLoot phatLoot) {
+        if (linkedPhatLoots.remove(phatLoot) && linkedPhatLoots.isEmpty()) {
+            removeLinkedPosition();
+        }
+    }
+
+    /**
+     * Marks the location of this chest as linked.
+     * The other half of a double chest is marked once the chest is resolved
+     */
+    private void addLinkedPosition() {
+        ChestRegistry.putLinked(ChestRegistry.internWorld(world), x, y, z, this);
+        resolved = false;
+        resolve();
+    }
+
+    /**
+     * Reads the Block of this chest if its chunk is loaded.
+     * Chests which are loaded from storage are read when their chunk loads (or when they are first used)
+     * so that loading PhatLoots never loads chunks
+     */
+    private void resolve() {
+        if (resolved) {
+            return;
+        }
+        World w = Bukkit.getWorld(world);
+        if (w == null || !w.isChunkLoaded(x >> 4, z >> 4)) {
+            return;
+        }
+        Block block = w.getBlockAt(x, y, z);
+        switch (block.getType()) {
+        case DISPENSER:
+        case DROPPER:
+            isDispenser = true;
+            break;
+        case TRAPPED_CHEST:
+        case CHEST:
+            if (!linkedPhatLoots.isEmpty() && !paired && !findOtherHalf(w, block)) {
+                //The chunk of the other half is not loaded yet
+                return;
             }
+            break;
+        default:
+            break;
+        }
+        resolved = true;
+    }
+
+    /**
+     * Marks the other half of a double chest as linked by checking the neighboring Blocks rather than the BlockState
+     *
+     * @param w The World of the chest
+     * @param block The Block of the chest
+     * @return false if a neighboring chunk is not loaded so the other half could not be found yet
+     */
+    private boolean findOtherHalf(World w, Block block) {
+        boolean complete = true;
+        for (BlockFace face : SIDES) {
+            int neighborX = x + face.getModX();
+            int neighborZ = z + face.getModZ();
+            if (!w.isChunkLoaded(neighborX >> 4, neighborZ >> 4)) {
+                complete = false;
+                continue;
+            }
+            if (w.getBlockAt(neighborX, y, neighborZ).getType() == block.getType()) {
+                int worldId = ChestRegistry.internWorld(world);
+                if (ChestRegistry.getLinked(worldId, neighborX, y, neighborZ) == null) {
+                    paired = true;
+                    pairX = neighborX;
+                    pairZ = neighborZ;
+                    ChestRegistry.putLinked(worldId, pairX, y, pairZ, this);
+                }
+                return true;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Unmarks the location of this chest (and the other half of a double chest)
+     */
+    private void removeLinkedPosition() {
+        int worldId = ChestRegistry.internWorld(world);
+        ChestRegistry.removeLinked(worldId, x, y, z);
+        if (paired) {
+            ChestRegistry.removeLinked(worldId, pairX, y, pairZ);
+            paired = false;
         }
-        return phatLoots;
     }
 
     /**
@@ -216,9 +496,15 @@ public class PhatLootChest {
         block = PhatLootsUtil.getLeftSide(block);
 
         //Set the new Block
+        boolean linked = !linkedPhatLoots.isEmpty();
+        if (linked) {
+            removeLinkedPosition();
+        }
+        ChestRegistry.remove(ChestRegistry.internWorld(world), x, y, z);
         x = target.getX();
         y = target.getY();
         z = target.getZ();
+        ChestRegistry.put(ChestRegistry.internWorld(world), x, y, z, this);
         //Only 'spawn' the new chest if it is not triggered to respawn
         if (state == null) {
             target.setType(block.getType());
@@ -226,6 +512,9 @@ public class PhatLootChest {
         } else {
             state = target.getState();
         }
+        if (linked) {
+            addLinkedPosition();
+        }
     }
 
     /**
@@ -618,7 +907,7 @@ public class PhatLootChest {
      * @return The amount of time (in ticks) that the PhatLootChest should reset
      */
     public long getResetTime() {
-        return getResetTime(PhatLoots.getPhatLoots());
+        return getResetTime(linkedPhatLoots);
     }
 
     /**
@@ -809,6 +1098,18 @@ public class PhatLootChest {
         return block.getWorld().getName() + "'" + block.getX() + "'" + block.getY() + "'" + block.getZ();
     }
 
+    /**
+     * Returns the ID which represents this PhatLootChest in a CooldownStore
+     *
+     * @return The interned ID of this Chest
+     */
+    int getCooldownId() {
+        if (cooldownId < 0) {
+            cooldownId = CooldownStore.internChest(toString());
+        }
+        return cooldownId;
+    }
+
     /**
      * Returns the String representation of this PhatLootChest.
      * The format of the returned String is world'x'y'z
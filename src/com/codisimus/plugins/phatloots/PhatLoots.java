@@ -10,12 +10,14 @@ import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.milkbowl.vault.economy.Economy;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -40,6 +42,8 @@ public class PhatLoots extends JavaPlugin {
     public static CommandHandler handler;
     public static final EnumMap<Material, HashMap<String, String>> types = new EnumMap(Material.class); //Material -> World Name -> PhatLoot Name
     private static final HashMap<String, PhatLoot> phatLoots = new HashMap<>(); //PhatLoot Name -> PhatLoot
+    private static StorageBackend storage; //Where PhatLoot data is saved
+    private static CooldownCoordinator cooldowns = new CooldownCoordinator(null); //Shares loot times with other servers
 
     public static void main(String[] args) {
         //Do Nothing - For debugging within NetBeans IDE
@@ -47,12 +51,22 @@ public class PhatLoots extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        cooldowns.close();
         saveLootTimes();
+        closeLootTimes();
+        LoreCorpus.stopWatching();
 
         //Respawn all chests
         for (PhatLootChest chest : (Collection<PhatLootChest>) PhatLootChest.chestsToRespawn.clone()) {
             chest.respawn(RespawnReason.PLUGIN_DISABLED);
         }
+
+        //Stop any scan so that the chests which it linked are queued to be saved
+        ChunkScanner.shutdown();
+        LootSimulator.shutdown();
+
+        //Finish writing any files which are still queued
+        PhatLootsIO.shutdown();
     }
 
     @Override
@@ -155,6 +169,20 @@ public class PhatLoots extends JavaPlugin {
 
         /* Load PhatLoot/Chest data */
         load();
+        cooldowns = new CooldownCoordinator(openCooldownBus());
+
+        /* Start loot time expiry task */
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                cooldowns.applyPending();
+
+                //Removes only the loot times which have just expired
+                for (PhatLoot phatLoot : getPhatLoots()) {
+                    phatLoot.clean(null);
+                }
+            }
+        }.runTaskTimer(this, 1L, 1L);
 
         /* Start save repeating task */
         if (autoSavePeriod > 0) {
@@ -204,6 +232,7 @@ public class PhatLoots extends JavaPlugin {
         PluginManager pm = Bukkit.getPluginManager();
         pm.registerEvents(new PhatLootsListener(), this);
         pm.registerEvents(new InventoryListener(), this);
+        pm.registerEvents(new ChunkListener(), this);
         if (pm.isPluginEnabled("Citizens")) {
             logger.info("Listening for Citizens NPC deaths");
             pm.registerEvents(new CitizensListener(), this);
@@ -265,16 +294,23 @@ public class PhatLoots extends JavaPlugin {
     }
 
     /**
-     * Loads each PhatLoot that has a LootTable file
+     * Loads each PhatLoot that has a LootTable
      */
     public static void load() {
-        //Load each YAML file in the LootTables folder
-        File dir = new File(dataFolder, "LootTables");
-        for (File file : dir.listFiles(PhatLootsUtil.YAML_FILTER)) {
+        //Copy the flat files into a new database the first time that it is used
+        StorageBackend target = openStorage();
+        storage = target;
+        if (!(target instanceof FlatFileBackend) && target.isEmpty()) {
+            FlatFileBackend flatFiles = new FlatFileBackend();
+            if (!flatFiles.isEmpty()) {
+                storage = flatFiles;
+            }
+        }
+
+        for (Map.Entry<String, YamlConfiguration> entry : storage.loadLootTables().entrySet()) {
             try {
-                String name = file.getName();
-                name = name.substring(0, name.length() - PhatLootsUtil.YAML_EXTENSION.length());
-                YamlConfiguration config = loadConfig(file);
+                String name = entry.getKey();
+                YamlConfiguration config = entry.getValue();
 
                 //Ensure the PhatLoot name matches the file name
                 PhatLoot phatLoot = (PhatLoot) config.get(config.contains(name)
@@ -282,17 +318,90 @@ public class PhatLoots extends JavaPlugin {
                                                           : config.getKeys(false).iterator().next());
                 if (!phatLoot.name.equals(name)) {
                     phatLoot.name = name;
+                    phatLoot.setModified();
                 }
                 phatLoots.put(name, phatLoot);
-                phatLoot.save();
+                //Only rewrite the file if loading changed the PhatLoot
+                phatLoot.saveIfModified();
             } catch (Exception ex) {
-                logger.log(Level.SEVERE, "Failed to load " + file.getName(), ex);
+                logger.log(Level.SEVERE, "Failed to load " + entry.getKey(), ex);
+            }
+        }
+
+        if (storage != target) {
+            closeLootTimes();
+            storage = target;
+            for (PhatLoot phatLoot : phatLoots.values()) {
+                phatLoot.rewriteAll();
+            }
+            logger.info("Copied " + phatLoots.size() + " PhatLoots from the flat files into the database");
+        }
+
+        //Chests within chunks which are already loaded are read now, the rest are read as their chunks load
+        for (World world : Bukkit.getWorlds()) {
+            PhatLootChest.resolveChests(world);
+        }
+    }
+
+    /**
+     * Opens the StorageBackend which is set in the config
+     *
+     * @return The SqlBackend if it is enabled and the database can be used, otherwise the FlatFileBackend
+     */
+    private static StorageBackend openStorage() {
+        if (PhatLootsConfig.storage.equalsIgnoreCase("SQL")) {
+            String url = PhatLootsConfig.databaseUrl.replace("{dataFolder}", dataFolder);
+            try {
+                return new SqlBackend(url, PhatLootsConfig.databaseUser, PhatLootsConfig.databasePassword);
+            } catch (SQLException ex) {
+                logger.log(Level.SEVERE, "Could not connect to " + url + ", PhatLoots will be saved as flat files", ex);
             }
+        } else if (!PhatLootsConfig.storage.equalsIgnoreCase("FlatFile")) {
+            logger.warning(PhatLootsConfig.storage + " is not a valid Storage type, PhatLoots will be saved as flat files");
         }
+        return new FlatFileBackend();
     }
 
     /**
-     * Saves all data for each PhatLoot
+     * Opens the CooldownBus which is set in the config
+     *
+     * @return The CooldownBus or null if loot times are not shared with other servers
+     */
+    private static CooldownBus openCooldownBus() {
+        switch (PhatLootsConfig.cooldownSync.toLowerCase()) {
+        case "none":
+            return null;
+        case "loopback":
+            return new LoopbackCooldownBus();
+        case "bungeecord":
+            logger.info("Sharing loot times with other servers through BungeeCord");
+            return new BungeeCordCooldownBus();
+        default:
+            logger.warning(PhatLootsConfig.cooldownSync + " is not a valid CooldownSync type, loot times will not be shared");
+            return null;
+        }
+    }
+
+    /**
+     * Returns the CooldownCoordinator which shares loot times with other servers
+     *
+     * @return The current CooldownCoordinator
+     */
+    public static CooldownCoordinator getCooldowns() {
+        return cooldowns;
+    }
+
+    /**
+     * Returns the StorageBackend which PhatLoot data is saved to
+     *
+     * @return The current StorageBackend
+     */
+    public static StorageBackend getStorage() {
+        return storage;
+    }
+
+    /**
+     * Saves all data for each PhatLoot which has changed since it was last written
      */
     public static void saveAll() {
         for (PhatLoot phatLoot : phatLoots.values()) {
@@ -337,9 +446,9 @@ public class PhatLoots extends JavaPlugin {
      */
     public static void removePhatLoot(PhatLoot phatLoot) {
         phatLoots.remove(phatLoot.name);
-        new File(dataFolder, "LootTables" + File.separator + phatLoot.name + PhatLootsUtil.YAML_EXTENSION).delete();
-        new File(dataFolder, "Chests" + File.separator + phatLoot.name + PhatLootsUtil.TEXT_EXTENSION).delete();
-        new File(dataFolder, "LootTimes" + File.separator + phatLoot.name + PhatLootsUtil.PROPERTIES_EXTENSION).delete();
+        phatLoot.unlinkChests();
+        storage.deletePhatLoot(phatLoot.name);
+        phatLoot.deleteLootTimes();
     }
 
     /**
@@ -431,16 +540,9 @@ public class PhatLoots extends JavaPlugin {
     public static LinkedList<PhatLoot> getExplicitlyLinkedPhatLoots(Block block) {
         LinkedList<PhatLoot> phatLootList = new LinkedList<>();
 
-        if (PhatLootsUtil.isLinkableType(block)) {
-            block = PhatLootsUtil.getLeftSide(block);
-            if (PhatLootChest.isPhatLootChest(block)) {
-                PhatLootChest chest = PhatLootChest.getChest(block);
-                for (PhatLoot phatLoot : phatLoots.values()) {
-                    if (phatLoot.containsChest(chest)) {
-                        phatLootList.add(phatLoot);
-                    }
-                }
-            }
+        //Blocks which are not linked are rejected without reading their BlockState
+        if (PhatLootsUtil.isLinkableType(block) && PhatLootChest.isPhatLootChest(block)) {
+            phatLootList = PhatLootChest.getChest(block).getLinkedPhatLoots();
         }
 
         return phatLootList;
@@ -478,12 +580,22 @@ public class PhatLoots extends JavaPlugin {
      */
     public static void saveLootTimes() {
         for (PhatLoot phatLoot : getPhatLoots()) {
-            //Clean up the loot times before writing to file
+            //Clean up the loot times before writing to file (only expired entries are visited)
             phatLoot.clean(null);
             phatLoot.saveLootTimes();
         }
     }
 
+    /**
+     * Closes the Loot time log of each PhatLoot and then the StorageBackend once any pending data is written
+     */
+    private static void closeLootTimes() {
+        for (PhatLoot phatLoot : getPhatLoots()) {
+            phatLoot.closeLootTimes();
+        }
+        storage.close();
+    }
+
     /**
      * Reloads PhatLoot data
      */
@@ -498,7 +610,11 @@ public class PhatLoots extends JavaPlugin {
      */
     public static void rl(CommandSender sender) {
         saveLootTimes();
+        closeLootTimes();
 
+        for (PhatLoot phatLoot : phatLoots.values()) {
+            phatLoot.unlinkChests();
+        }
         phatLoots.clear();
         plugin.reloadConfig();
         load();
@@ -515,7 +631,7 @@ public class PhatLoots extends JavaPlugin {
      * @param file The file to load
      * @return The YamlConfiguration loaded
      */
-    private static YamlConfiguration loadConfig(File file) {
+    static YamlConfiguration loadConfig(File file) {
         YamlConfiguration fileConfiguration = new YamlConfiguration();
         try {
             if (isValidUTF8(Files.toByteArray(file))) {
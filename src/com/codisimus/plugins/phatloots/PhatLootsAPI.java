@@ -1,11 +1,24 @@
 package com.codisimus.plugins.phatloots;
 
+import com.codisimus.plugins.phatloots.events.PlayerLootEvent;
+import com.codisimus.plugins.phatloots.events.PreLootEvent;
+import com.codisimus.plugins.phatloots.events.PrePlayerLootEvent;
 import com.codisimus.plugins.phatloots.loot.LootBundle;
+import com.codisimus.plugins.phatloots.loot.LootOdds;
+import com.codisimus.plugins.phatloots.loot.LootPlan;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import org.bukkit.Bukkit;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
 
 /**
  * API for the PhatLoots plugin
@@ -13,6 +26,18 @@ import org.bukkit.entity.Player;
  * @author Codisimus
  */
 public class PhatLootsAPI {
+    /**
+     * Receives the loot of an asynchronous roll
+     */
+    public interface LootCallback {
+        /**
+         * Called on the server thread once the loot has been rolled for
+         *
+         * @param lootBundle The loot that was given from the roll
+         */
+        void onLootRolled(LootBundle lootBundle);
+    }
+
     /**
      * Returns true if the given Block is linked to a PhatLoot
      *
@@ -47,6 +72,158 @@ public class PhatLootsAPI {
                : phatLoot.rollForLoot();
     }
 
+    /**
+     * Returns the exact odds of each Loot of the specified loot tables.
+     * Odds are calculated once and then reused until the loot tables are edited
+     *
+     * @param phatLootName The name of the specified loot tables
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @return The LootOdds or null if the PhatLoot of the given name does not exist
+     */
+    public static LootOdds getOdds(String phatLootName, double lootingBonus) {
+        PhatLoot phatLoot = PhatLoots.getPhatLoot(phatLootName);
+        return phatLoot == null
+               ? null
+               : phatLoot.getLootPlan().getOdds(lootingBonus);
+    }
+
+    /**
+     * Returns every active cooldown of the given Player.
+     * Global PhatLoots include the cooldowns which are shared by all Players
+     *
+     * @param player The given Player
+     * @return Each PhatLoot mapped to the remaining time of each of its PhatLootChests (see PhatLoot.getCooldowns)
+     */
+    public static Map<PhatLoot, Map<PhatLootChest, Long>> getCooldowns(Player player) {
+        HashMap<PhatLoot, Map<PhatLootChest, Long>> cooldowns = new HashMap<>();
+        for (PhatLoot phatLoot : PhatLoots.getPhatLoots()) {
+            Map<PhatLootChest, Long> times = phatLoot.getCooldowns(player);
+            if (!times.isEmpty()) {
+                cooldowns.put(phatLoot, times);
+            }
+        }
+        return cooldowns;
+    }
+
+    /**
+     * Rolls for loot of the specified loot tables without blocking the server thread.
+     * Generating the loot (including enchanting, naming and lore) is done by a worker thread.
+     * An empty LootBundle is given if the PhatLoot of the given name does not exist
+     *
+     * @param phatLootName The name of the specified loot tables
+     * @return The Future loot that was given from the roll
+     */
+    public static Future<LootBundle> rollForLootAsync(String phatLootName) {
+        return rollForLootAsync(phatLootName, 0, null);
+    }
+
+    /**
+     * Rolls for loot of the specified loot tables without blocking the server thread.
+     * Generating the loot (including enchanting, naming and lore) is done by a worker thread.
+     * The callback is then run on the server thread where it is safe to modify the world.
+     * An empty LootBundle is given if the PhatLoot of the given name does not exist
+     *
+     * @param phatLootName The name of the specified loot tables
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @param callback The LootCallback to give the loot to or null if the Future will be used instead
+     * @return The Future loot that was given from the roll
+     */
+    public static Future<LootBundle> rollForLootAsync(String phatLootName, final double lootingBonus, final LootCallback callback) {
+        PhatLoot phatLoot = PhatLoots.getPhatLoot(phatLootName);
+        //Compile the plan before leaving this thread so that the loot tables are not read while being edited
+        final LootPlan plan = phatLoot == null ? null : phatLoot.getLootPlan();
+        FutureTask<LootBundle> task = new FutureTask<>(new Callable<LootBundle>() {
+            @Override
+            public LootBundle call() {
+                final LootBundle lootBundle = plan == null
+                                              ? new LootBundle()
+                                              : plan.roll(new LootBundle(), lootingBonus);
+                if (callback != null) {
+                    //Return to the server thread before handing over the loot
+                    new BukkitRunnable() {
+                        @Override
+                        public void run() {
+                            callback.onLootRolled(lootBundle);
+                        }
+                    }.runTask(PhatLoots.plugin);
+                }
+                return lootBundle;
+            }
+        });
+        Bukkit.getScheduler().runTaskAsynchronously(PhatLoots.plugin, task);
+        return task;
+    }
+
+    /**
+     * Rolls for loot of the specified loot tables without blocking the server thread
+     * and then gives the loot to the given Player.
+     * The loot events are called and the cost of the loot is charged just as when looting a chest by command.
+     * Money, experience, commands, messages and items are given on the server thread.
+     * Items which do not fit in the Player's inventory are dropped at their feet.
+     * This must be called on the server thread
+     *
+     * @param phatLootName The name of the specified loot tables
+     * @param player The Player to give the loot to
+     * @return The Future loot that was given from the roll
+     */
+    public static Future<LootBundle> giveLootAsync(String phatLootName, final Player player) {
+        final PhatLoot phatLoot = PhatLoots.getPhatLoot(phatLootName);
+        double lootingBonus = 0;
+        if (phatLoot != null) {
+            //Call the pre-event before rolling so that the looting bonus may be modified
+            PreLootEvent preEvent = new PrePlayerLootEvent(player, phatLoot, null, 0);
+            Bukkit.getPluginManager().callEvent(preEvent);
+            if (preEvent.isCancelled()) {
+                FutureTask<LootBundle> task = new FutureTask<>(new Callable<LootBundle>() {
+                    @Override
+                    public LootBundle call() {
+                        return new LootBundle();
+                    }
+                });
+                task.run();
+                return task;
+            }
+            lootingBonus = preEvent.getLootingBonus();
+        }
+
+        return rollForLootAsync(phatLootName, lootingBonus, new LootCallback() {
+            @Override
+            public void onLootRolled(LootBundle lootBundle) {
+                if (phatLoot != null && player.isOnline()) {
+                    giveLoot(player, phatLoot, lootBundle);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gives the contents of the LootBundle to the given Player.
+     * This must be called on the server thread
+     *
+     * @param player The Player to give the loot to
+     * @param phatLoot The PhatLoot which was rolled for
+     * @param lootBundle The loot that was rolled for
+     */
+    private static void giveLoot(Player player, PhatLoot phatLoot, LootBundle lootBundle) {
+        //Call the event to be modified
+        PlayerLootEvent event = new PlayerLootEvent(player, phatLoot, null, lootBundle);
+        Bukkit.getPluginManager().callEvent(event);
+        if (event.isCancelled()) {
+            return;
+        }
+
+        //Nothing is given if the Player cannot afford the loot
+        if (!phatLoot.giveRewards(player, lootBundle)) {
+            return;
+        }
+
+        //Give all of the items and drop any that do not fit
+        Collection<ItemStack> itemList = lootBundle.getItemList();
+        for (ItemStack item : player.getInventory().addItem(itemList.toArray(new ItemStack[itemList.size()])).values()) {
+            player.getWorld().dropItemNaturally(player.getLocation(), item);
+        }
+    }
+
     /**
      * Returns all PhatLoots that are linked to the given Block
      *
@@ -83,7 +260,10 @@ public class PhatLootsAPI {
     public static ArrayList<Block> getAllPhatLootChestBlocks() {
         ArrayList<Block> blockList = new ArrayList<>();
         for (PhatLootChest chest : getAllPhatLootChests()) {
-            blockList.add(chest.getBlock());
+            //Chests within Worlds which are not loaded have no Block
+            if (Bukkit.getWorld(chest.getWorldName()) != null) {
+                blockList.add(chest.getBlock());
+            }
         }
         return blockList;
     }
@@ -144,10 +324,9 @@ public class PhatLootsAPI {
     }
 
     /**
-     * Saves all plugin information.
+     * Saves all plugin information which has been modified.
      * This includes loot tables, linked chests, and loot times.
-     * This is a lot of data writing and should not be called too often.
-     * It is better to save individual PhatLoots and only the modified information
+     * PhatLoots which have not changed since they were last written are skipped
      */
     public static void saveAll() {
         PhatLoots.saveAll();
@@ -4,7 +4,9 @@ import com.codisimus.plugins.phatloots.commands.LootCommand;
 import com.codisimus.plugins.phatloots.listeners.MobListener;
 import com.codisimus.plugins.phatloots.listeners.PhatLootsListener;
 import com.codisimus.plugins.phatloots.loot.Item;
+import com.codisimus.plugins.phatloots.loot.Loot;
 import com.codisimus.plugins.phatloots.loot.LootCollection;
+import com.codisimus.plugins.phatloots.loot.LoreCorpus;
 import java.io.File;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -51,6 +53,12 @@ public class PhatLootsConfig {
     public static String mobDroppedExperience;
     public static String lootMessage;
     public static String lootBroadcast;
+    static String storage; //FlatFile or SQL
+    static String databaseUrl;
+    static String databaseUser;
+    static String databasePassword;
+    static String cooldownSync; //None, Loopback or BungeeCord
+    static HashSet<String> mappedLootTimes = new HashSet<>(); //Names of PhatLoots which use a MappedCooldownStore
 
     public static void load() {
         FileConfiguration config = PhatLoots.plugin.getConfig();
@@ -136,6 +144,7 @@ public class PhatLootsConfig {
             Item.blastDefenseString = getString(config, "<blastdef>");
             Item.fallDefenseString = getString(config, "<falldef>");
         }
+        Item.clearRenderedLore();
 
 
         /* DEFAULTS */
@@ -186,7 +195,19 @@ public class PhatLootsConfig {
         PhatLoot.unlink = config.getBoolean("UnlinkGlobalChestsThatNeverReset");
         PhatLoot.commandCooldown = config.getBoolean("ApplyCooldownToCommandLoot");
         PhatLoots.autoSavePeriod = config.getInt("AutoSavePeriod") * 20L;
+        storage = config.getString("Storage", "FlatFile");
+        databaseUrl = config.getString("Database.Url", "jdbc:sqlite:{dataFolder}/PhatLoots.db");
+        databaseUser = config.getString("Database.User", "");
+        databasePassword = config.getString("Database.Password", "");
+        cooldownSync = config.getString("CooldownSync", "None");
+        mappedLootTimes.clear();
+        mappedLootTimes.addAll(config.getStringList("MappedLootTimes"));
         PhatLootsListener.autoBreakOnPunch = config.getBoolean("AutoBreakOnPunch");
+        if (config.getLong("RandomSeed", 0) == 0) {
+            PhatLootsRandom.clearSeed();
+        } else {
+            PhatLootsRandom.setSeed(config.getLong("RandomSeed"));
+        }
 
         
         /* LORES.YML */
@@ -204,6 +225,11 @@ public class PhatLootsConfig {
         }
 
 
+        /* ITEM DESCRIPTIONS */
+
+        LoreCorpus.load();
+
+
         /* TIERS.YML */
 
         fileName = "tiers.yml";
@@ -214,6 +240,7 @@ public class PhatLootsConfig {
             }
 
             Item.tiersConfig = YamlConfiguration.loadConfiguration(file);
+            Item.compileTiers();
         } catch (Exception ex) {
             PhatLoots.logger.log(Level.SEVERE, "Failed to load " + fileName, ex);
         }
@@ -229,9 +256,13 @@ public class PhatLootsConfig {
             }
 
             Item.enchantmentConfig = YamlConfiguration.loadConfiguration(file);
+            Item.compileEnchantments();
         } catch (Exception ex) {
             PhatLoots.logger.log(Level.SEVERE, "Failed to load " + fileName, ex);
         }
+
+        //Compiled loot plans depend on some of these settings
+        Loot.tableModified();
     }
 
     /**
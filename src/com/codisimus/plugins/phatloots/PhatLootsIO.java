@@ -0,0 +1,211 @@
+package com.codisimus.plugins.phatloots;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+
+/**
+ * PhatLootsIO writes PhatLoot files on a dedicated thread so that saving never blocks the server.
+ * Data is captured on the main thread and then handed to the I/O thread which writes it to a temporary file
+ * and renames it over the real file so that a crash can never leave a half written file.
+ * If a file is saved again before its previous data was written then only the latest data is written
+ *
+ * @author Codisimus
+ */
+public final class PhatLootsIO {
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final ConcurrentHashMap<File, byte[]> pending = new ConcurrentHashMap<>(); //Latest data of each file waiting to be written
+    private static final byte[] DELETE = new byte[0]; //Marks a file which should be deleted
+    private static ExecutorService executor;
+
+    private PhatLootsIO() {
+    }
+
+    /**
+     * Writes the given data to the given file on the I/O thread
+     *
+     * @param file The file to replace
+     * @param data The new contents of the file
+     */
+    public static void write(File file, byte[] data) {
+        submit(file, data);
+    }
+
+    /**
+     * Deletes the given file on the I/O thread (after any earlier writes to it)
+     *
+     * @param file The file to delete
+     */
+    public static void delete(File file) {
+        submit(file, DELETE);
+    }
+
+    /**
+     * Runs the given task on the I/O thread after every write which has been submitted so far
+     *
+     * @param task The task to run
+     */
+    public static void execute(Runnable task) {
+        getExecutor().execute(task);
+    }
+
+    /**
+     * Blocks until everything which has been submitted so far has been written
+     */
+    public static void flush() {
+        ExecutorService service;
+        synchronized (PhatLootsIO.class) {
+            service = executor;
+        }
+        if (service == null) {
+            return;
+        }
+        try {
+            service.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            //The empty task cannot fail
+        }
+    }
+
+    /**
+     * Writes everything which has been submitted and then stops the I/O thread
+     */
+    static void shutdown() {
+        ExecutorService service;
+        synchronized (PhatLootsIO.class) {
+            service = executor;
+            executor = null;
+        }
+        if (service == null) {
+            return;
+        }
+        service.shutdown();
+        try {
+            if (!service.awaitTermination(1, TimeUnit.MINUTES)) {
+                PhatLoots.logger.severe("Timed out while saving PhatLoots files");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the given data to a temporary file and then moves it over the given file
+     *
+     * @param file The file to replace
+     * @param data The new contents of the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeAtomically(File file, byte[] data) throws IOException {
+        File temp = new File(file.getPath() + TEMP_EXTENSION);
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            fos.write(data);
+            fos.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns a copy of the given object in which every ConfigurationSerializable has been serialized.
+     * The copy may be saved as YAML from any thread while the original continues to be modified
+     *
+     * @param object The object to copy
+     * @return Maps, Lists and values which produce the same YAML as the given object
+     */
+    public static Object snapshot(Object object) {
+        if (object instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) object;
+            //The same layout that YamlRepresenter uses
+            LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+            map.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, ConfigurationSerialization.getAlias(serializable.getClass()));
+            for (Map.Entry<String, Object> entry : serializable.serialize().entrySet()) {
+                map.put(entry.getKey(), snapshot(entry.getValue()));
+            }
+            return map;
+        } else if (object instanceof Map) {
+            LinkedHashMap<Object, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                map.put(entry.getKey(), snapshot(entry.getValue()));
+            }
+            return map;
+        } else if (object instanceof List) {
+            ArrayList<Object> list = new ArrayList<>();
+            for (Object element : (List<?>) object) {
+                list.add(snapshot(element));
+            }
+            return list;
+        } else {
+            return object;
+        }
+    }
+
+    /**
+     * Queues the given data to be written to the given file
+     *
+     * @param file The file to replace
+     * @param data The new contents of the file or DELETE
+     */
+    private static void submit(final File file, byte[] data) {
+        if (pending.put(file, data) != null) {
+            //The queued task will write the latest data
+            return;
+        }
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] latest = pending.remove(file);
+                try {
+                    if (latest == DELETE) {
+                        Files.deleteIfExists(file.toPath());
+                    } else if (latest != null) {
+                        writeAtomically(file, latest);
+                    }
+                } catch (IOException ex) {
+                    PhatLoots.logger.log(Level.SEVERE, "Failed to save " + file.getName(), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the I/O thread
+     *
+     * @return The single thread executor
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "PhatLoots I/O");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
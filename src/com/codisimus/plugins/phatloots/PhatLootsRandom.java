@@ -0,0 +1,204 @@
+package com.codisimus.plugins.phatloots;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Supplies the random numbers used when rolling for loot.
+ * Each thread has its own fast Generator so rolls from different threads never contend.
+ * Setting a seed makes rolls reproducible (useful for testing loot tables and simulations).
+ * Add-ons may plug in their own Generator for the current thread
+ *
+ * @author Codisimus
+ */
+public final class PhatLootsRandom {
+    private static final AtomicLong threadCount = new AtomicLong(); //Number of Generators created since the seed changed
+    private static volatile Long seed = null; //null if rolls should not be reproducible
+    private static volatile int generation = 0; //Increased each time the seed changes
+    private static final ThreadLocal<Slot> slots = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            return new Slot();
+        }
+    };
+
+    /**
+     * A source of random numbers
+     */
+    public interface Generator {
+        /**
+         * Returns a random int between 0 (inclusive) and bound (exclusive)
+         *
+         * @param bound The upper bound which must be positive
+         * @return a random int between 0 and bound
+         */
+        int nextInt(int bound);
+
+        /**
+         * Returns a random double between 0 (inclusive) and 1 (exclusive)
+         *
+         * @return a random double between 0 and 1
+         */
+        double nextDouble();
+    }
+
+    /**
+     * The Generator of a single thread
+     */
+    private static class Slot {
+        private Generator generator;
+        private int generation = -1;
+        private boolean pinned; //True if the Generator was set for this thread specifically
+    }
+
+    private PhatLootsRandom() {
+    }
+
+    /**
+     * Returns the Generator of the current thread
+     *
+     * @return The Generator to roll with
+     */
+    public static Generator current() {
+        Slot slot = slots.get();
+        if (!slot.pinned && slot.generation != generation) {
+            slot.generation = generation;
+            slot.generator = createGenerator();
+        }
+        return slot.generator;
+    }
+
+    /**
+     * Makes all rolls reproducible.
+     * The current thread rolls from the given seed
+     * and each other thread rolls from a seed derived from the order in which it first rolls
+     *
+     * @param seed The seed to roll from
+     */
+    public static void setSeed(long seed) {
+        PhatLootsRandom.seed = seed;
+        threadCount.set(0);
+        generation++;
+        current();
+    }
+
+    /**
+     * Stops rolls from being reproducible
+     */
+    public static void clearSeed() {
+        seed = null;
+        generation++;
+    }
+
+    /**
+     * Returns the seed that all rolls are made from
+     *
+     * @return The seed or null if rolls are not reproducible
+     */
+    public static Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Makes the rolls of the current thread reproducible from the given seed.
+     * This does not affect the rolls of any other thread
+     *
+     * @param seed The seed to roll from
+     */
+    public static void setThreadSeed(long seed) {
+        setThreadGenerator(new XorShiftGenerator(seed));
+    }
+
+    /**
+     * Sets the Generator which the current thread will roll with
+     *
+     * @param generator The Generator to use
+     */
+    public static void setThreadGenerator(Generator generator) {
+        Slot slot = slots.get();
+        slot.generator = generator;
+        slot.pinned = true;
+    }
+
+    /**
+     * Returns the current thread to rolling with the shared settings
+     */
+    public static void clearThreadGenerator() {
+        Slot slot = slots.get();
+        slot.pinned = false;
+        slot.generation = -1;
+    }
+
+    /**
+     * Creates a new Generator for the current thread
+     *
+     * @return a Generator which is seeded according to the current settings
+     */
+    private static Generator createGenerator() {
+        Long current = seed;
+        return current == null
+               ? new XorShiftGenerator(System.nanoTime() ^ Thread.currentThread().getId() ^ threadCount.incrementAndGet() * 0x9E3779B97F4A7C15L)
+               : new XorShiftGenerator(current + threadCount.getAndIncrement() * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * A xoroshiro128+ Generator which is not thread safe
+     */
+    private static final class XorShiftGenerator implements Generator {
+        private long s0;
+        private long s1;
+
+        /**
+         * Constructs a new Generator from the given seed
+         *
+         * @param seed The seed which is spread over the state using SplitMix64
+         */
+        private XorShiftGenerator(long seed) {
+            s0 = mix(seed += 0x9E3779B97F4A7C15L);
+            s1 = mix(seed + 0x9E3779B97F4A7C15L);
+            if (s0 == 0 && s1 == 0) {
+                s1 = 1; //The state may not be all zeros
+            }
+        }
+
+        /**
+         * Scrambles the bits of the given number (the output function of SplitMix64)
+         *
+         * @param z The number to scramble
+         * @return The scrambled number
+         */
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        /**
+         * Advances the state and returns 64 random bits
+         *
+         * @return a random long
+         */
+        private long nextLong() {
+            long a = s0;
+            long b = s1;
+            long result = a + b;
+            b ^= a;
+            s0 = Long.rotateLeft(a, 24) ^ b ^ (b << 16);
+            s1 = Long.rotateLeft(b, 37);
+            return result;
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            if (bound <= 0) {
+                throw new IllegalArgumentException("bound must be positive");
+            }
+            //Scale 31 random bits to the bound rather than using the modulus
+            return (int) (((nextLong() >>> 33) * bound) >>> 31);
+        }
+
+        @Override
+        public double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+    }
+}
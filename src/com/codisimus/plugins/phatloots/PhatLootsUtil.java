@@ -3,7 +3,6 @@ package com.codisimus.plugins.phatloots;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.util.LinkedList;
-import java.util.Random;
 import org.apache.commons.lang.WordUtils;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
@@ -19,7 +18,6 @@ import org.bukkit.inventory.ItemStack;
  * @author Codisimus
  */
 public class PhatLootsUtil {
-    private static Random random = new Random();
     public static final String PROPERTIES_EXTENSION = ".properties";
     public static final String TEXT_EXTENSION = ".txt";
     public static final String YAML_EXTENSION = ".yml";
@@ -65,7 +63,7 @@ public class PhatLootsUtil {
      * @return a random int between 0 and y
      */
     public static int rollForInt(int upper) {
-        return random.nextInt(upper + 1); //+1 is needed to make it inclusive
+        return PhatLootsRandom.current().nextInt(upper + 1); //+1 is needed to make it inclusive
     }
 
     /**
@@ -76,7 +74,7 @@ public class PhatLootsUtil {
      * @return a random int between x and y
      */
     public static int rollForInt(int lower, int upper) {
-        return random.nextInt(upper + 1 - lower) + lower;
+        return PhatLootsRandom.current().nextInt(upper + 1 - lower) + lower;
     }
 
     /**
@@ -86,7 +84,7 @@ public class PhatLootsUtil {
      * @return a random double between 0 and y
      */
     public static double rollForDouble(double upper) {
-        return random.nextDouble() * upper;
+        return PhatLootsRandom.current().nextDouble() * upper;
     }
 
     /**
@@ -97,7 +95,7 @@ public class PhatLootsUtil {
      * @return a random double between x and y
      */
     public static double rollForDouble(int lower, int upper) {
-        return random.nextInt(upper + 1 - lower) + lower;
+        return PhatLootsRandom.current().nextInt(upper + 1 - lower) + lower;
     }
 
     /**
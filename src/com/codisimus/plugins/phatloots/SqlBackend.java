@@ -0,0 +1,585 @@
+package com.codisimus.plugins.phatloots;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * The SqlBackend stores every PhatLoot within a database through JDBC (e.g. an embedded SQLite or H2 database).
+ * Loot times are kept in their own rows which are indexed by chest and by player.
+ * The connection is only used from the PhatLoots I/O thread so writes never block the server
+ * and changes to loot times are written in batches when the PhatLoot is saved
+ *
+ * @author Codisimus
+ */
+final class SqlBackend implements StorageBackend {
+    private static final String[] CREATE = {
+        "CREATE TABLE IF NOT EXISTS phatloots_tables (name VARCHAR(255) NOT NULL PRIMARY KEY, yaml TEXT NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS phatloots_chests (phatloot VARCHAR(255) NOT NULL, world VARCHAR(255) NOT NULL,"
+                + " x INT NOT NULL, y INT NOT NULL, z INT NOT NULL, PRIMARY KEY (phatloot, world, x, y, z))",
+        "CREATE INDEX IF NOT EXISTS phatloots_chests_location ON phatloots_chests (world, x, y, z)",
+        "CREATE TABLE IF NOT EXISTS phatloots_times (phatloot VARCHAR(255) NOT NULL, chest VARCHAR(255) NOT NULL,"
+                + " player VARCHAR(64) NOT NULL, looted BIGINT NOT NULL, PRIMARY KEY (phatloot, chest, player))",
+        "CREATE INDEX IF NOT EXISTS phatloots_times_player ON phatloots_times (phatloot, player)"
+    };
+    private static final String NO_CHEST = ""; //Stored in place of the chest of loot times which are not tied to a chest
+
+    private static final int PUT = 0; //Chest, player, time
+    private static final int REMOVE = 1; //Chest, player
+    private static final int REMOVE_CHEST = 2; //Chest
+    private static final int REMOVE_USER = 3; //Player
+    private static final int REMOVE_WORLD = 4; //Player, chest pattern
+    private static final int CLEAR = 5;
+    private static final String[] TIME_STATEMENTS = {
+        "INSERT INTO phatloots_times (phatloot, chest, player, looted) VALUES (?, ?, ?, ?)",
+        "DELETE FROM phatloots_times WHERE phatloot = ? AND chest = ? AND player = ?",
+        "DELETE FROM phatloots_times WHERE phatloot = ? AND chest = ?",
+        "DELETE FROM phatloots_times WHERE phatloot = ? AND player = ?",
+        "DELETE FROM phatloots_times WHERE phatloot = ? AND player = ? AND chest LIKE ? ESCAPE '!'",
+        "DELETE FROM phatloots_times WHERE phatloot = ?"
+    };
+
+    private final Connection connection;
+
+    /**
+     * Connects to the given database and creates the PhatLoots tables if they do not exist
+     *
+     * @param url The JDBC URL of the database
+     * @param user The user to connect as (may be empty)
+     * @param password The password of the user (may be empty)
+     * @throws SQLException if the database cannot be used
+     */
+    SqlBackend(String url, String user, String password) throws SQLException {
+        connection = DriverManager.getConnection(url, user, password);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : CREATE) {
+                statement.executeUpdate(sql);
+            }
+        } catch (SQLException ex) {
+            connection.close();
+            throw ex;
+        }
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Reads every row of the loot table table
+     *
+     * @return PhatLoot name -> The YAML which contains the PhatLoot
+     */
+    @Override
+    public Map<String, YamlConfiguration> loadLootTables() {
+        LinkedHashMap<String, String> rows = query(new Callable<LinkedHashMap<String, String>>() {
+            @Override
+            public LinkedHashMap<String, String> call() throws SQLException {
+                LinkedHashMap<String, String> rows = new LinkedHashMap<>();
+                try (Statement statement = connection.createStatement();
+                        ResultSet results = statement.executeQuery("SELECT name, yaml FROM phatloots_tables")) {
+                    while (results.next()) {
+                        rows.put(results.getString(1), results.getString(2));
+                    }
+                }
+                return rows;
+            }
+        });
+
+        //PhatLoots are constructed on the main thread because they load their chests and loot times
+        LinkedHashMap<String, YamlConfiguration> tables = new LinkedHashMap<>();
+        if (rows != null) {
+            for (Map.Entry<String, String> entry : rows.entrySet()) {
+                YamlConfiguration config = new YamlConfiguration();
+                try {
+                    config.loadFromString(entry.getValue());
+                } catch (InvalidConfigurationException ex) {
+                    PhatLoots.logger.log(Level.SEVERE, "§4Could not load data of " + entry.getKey(), ex);
+                }
+                tables.put(entry.getKey(), config);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Writes the loot table as YAML on the I/O thread
+     *
+     * @param name The name of the PhatLoot
+     * @param data The PhatLoot as returned by PhatLootsIO.snapshot
+     */
+    @Override
+    public void saveLootTable(final String name, final Object data) {
+        update("Could not save PhatLoot " + name, new Callable<Void>() {
+            @Override
+            public Void call() throws SQLException {
+                YamlConfiguration config = new YamlConfiguration();
+                config.set(name, data);
+                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM phatloots_tables WHERE name = ?");
+                        PreparedStatement insert = connection.prepareStatement("INSERT INTO phatloots_tables (name, yaml) VALUES (?, ?)")) {
+                    delete.setString(1, name);
+                    delete.executeUpdate();
+                    insert.setString(1, name);
+                    insert.setString(2, config.saveToString());
+                    insert.executeUpdate();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Reads the chests of the PhatLoot
+     *
+     * @param name The name of the PhatLoot
+     * @return The world, x, y and z of each chest
+     */
+    @Override
+    public List<String[]> loadChests(final String name) {
+        List<String[]> chests = query(new Callable<List<String[]>>() {
+            @Override
+            public List<String[]> call() throws SQLException {
+                ArrayList<String[]> chests = new ArrayList<>();
+                try (PreparedStatement select = connection.prepareStatement("SELECT world, x, y, z FROM phatloots_chests WHERE phatloot = ?")) {
+                    select.setString(1, name);
+                    try (ResultSet results = select.executeQuery()) {
+                        while (results.next()) {
+                            chests.add(new String[] {
+                                results.getString(1), String.valueOf(results.getInt(2)),
+                                String.valueOf(results.getInt(3)), String.valueOf(results.getInt(4))
+                            });
+                        }
+                    }
+                }
+                return chests;
+            }
+        });
+        return chests == null ? new ArrayList<String[]>() : chests;
+    }
+
+    /**
+     * Replaces the chests of the PhatLoot in a single batch on the I/O thread
+     *
+     * @param name The name of the PhatLoot
+     * @param chests The String representation of each PhatLootChest (world'x'y'z)
+     */
+    @Override
+    public void saveChests(final String name, final List<String> chests) {
+        update("Could not save the chests of " + name, new Callable<Void>() {
+            @Override
+            public Void call() throws SQLException {
+                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM phatloots_chests WHERE phatloot = ?");
+                        PreparedStatement insert = connection.prepareStatement("INSERT INTO phatloots_chests (phatloot, world, x, y, z) VALUES (?, ?, ?, ?, ?)")) {
+                    delete.setString(1, name);
+                    delete.executeUpdate();
+                    for (String chest : chests) {
+                        String[] split = chest.split("'");
+                        insert.setString(1, name);
+                        insert.setString(2, split[0]);
+                        insert.setInt(3, Integer.parseInt(split[1]));
+                        insert.setInt(4, Integer.parseInt(split[2]));
+                        insert.setInt(5, Integer.parseInt(split[3]));
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Reads the loot times of the PhatLoot into the given store
+     *
+     * @param name The name of the PhatLoot
+     * @param store The loot times of the PhatLoot
+     * @return The LootTimesLog which writes changes to the database
+     */
+    @Override
+    public LootTimesLog openLootTimes(final String name, CooldownTable store) {
+        List<Object[]> rows = query(new Callable<List<Object[]>>() {
+            @Override
+            public List<Object[]> call() throws SQLException {
+                ArrayList<Object[]> rows = new ArrayList<>();
+                try (PreparedStatement select = connection.prepareStatement("SELECT chest, player, looted FROM phatloots_times WHERE phatloot = ?")) {
+                    select.setString(1, name);
+                    try (ResultSet results = select.executeQuery()) {
+                        while (results.next()) {
+                            rows.add(new Object[] { results.getString(1), results.getString(2), results.getLong(3) });
+                        }
+                    }
+                }
+                return rows;
+            }
+        });
+        if (rows != null) {
+            for (Object[] row : rows) {
+                String chest = (String) row[0];
+                store.put(chest.equals(NO_CHEST) ? CooldownStore.NO_CHEST : CooldownStore.internChest(chest),
+                          CooldownStore.internUser((String) row[1]), (Long) row[2]);
+            }
+        }
+        return new SqlLootTimes(name);
+    }
+
+    /**
+     * Deletes the loot table and chests of the PhatLoot on the I/O thread
+     *
+     * @param name The name of the PhatLoot
+     */
+    @Override
+    public void deletePhatLoot(final String name) {
+        update("Could not delete PhatLoot " + name, new Callable<Void>() {
+            @Override
+            public Void call() throws SQLException {
+                try (PreparedStatement deleteTable = connection.prepareStatement("DELETE FROM phatloots_tables WHERE name = ?");
+                        PreparedStatement deleteChests = connection.prepareStatement("DELETE FROM phatloots_chests WHERE phatloot = ?")) {
+                    deleteTable.setString(1, name);
+                    deleteTable.executeUpdate();
+                    deleteChests.setString(1, name);
+                    deleteChests.executeUpdate();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns true if the loot table table has no rows
+     *
+     * @return true if there are no loot tables
+     */
+    @Override
+    public boolean isEmpty() {
+        Integer count = query(new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                try (Statement statement = connection.createStatement();
+                        ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM phatloots_tables")) {
+                    return results.next() ? results.getInt(1) : 0;
+                }
+            }
+        });
+        return count != null && count == 0;
+    }
+
+    /**
+     * Closes the connection once every pending write is complete
+     */
+    @Override
+    public void close() {
+        //The connection is closed directly since query() would commit after the connection is closed
+        FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws SQLException {
+                connection.close();
+                return null;
+            }
+        });
+        PhatLootsIO.execute(task);
+        try {
+            task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            PhatLoots.logger.log(Level.SEVERE, "Failed to close the database connection", ex.getCause());
+        }
+    }
+
+    /**
+     * Runs the given query on the I/O thread and waits for its result
+     *
+     * @param query The query to run
+     * @return The result of the query or null if it failed
+     */
+    private <T> T query(final Callable<T> query) {
+        FutureTask<T> task = new FutureTask<>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try {
+                    T result = query.call();
+                    //End the transaction so that the read does not hold any locks
+                    connection.commit();
+                    return result;
+                } catch (Exception ex) {
+                    rollback();
+                    throw ex;
+                }
+            }
+        });
+        PhatLootsIO.execute(task);
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            PhatLoots.logger.log(Level.SEVERE, "Failed to read from the database", ex.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Runs the given update on the I/O thread and commits it
+     *
+     * @param failure The message to log if the update fails
+     * @param update The update to run
+     */
+    private void update(final String failure, final Callable<Void> update) {
+        PhatLootsIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    update.call();
+                    connection.commit();
+                } catch (Exception ex) {
+                    rollback();
+                    PhatLoots.logger.log(Level.SEVERE, failure, ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Discards the current transaction after a failure
+     */
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException ex) {
+            //The connection is unusable and the failure has been logged
+        }
+    }
+
+    /**
+     * A single change to the loot times of a PhatLoot
+     */
+    private static final class Change {
+        private final int type;
+        private final Object[] values; //Bound after the name of the PhatLoot
+
+        private Change(int type, Object... values) {
+            this.type = type;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Records changes to the loot times of a PhatLoot and writes them to the database in batches
+     */
+    private final class SqlLootTimes implements LootTimesLog {
+        private final String name;
+        private ArrayList<Change> changes = new ArrayList<>();
+
+        private SqlLootTimes(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records that a loot time was set
+         *
+         * @param chest The ID of the chest
+         * @param user The ID of the user
+         * @param time The time in milliseconds
+         */
+        @Override
+        public void put(int chest, int user, long time) {
+            changes.add(new Change(PUT, getChest(chest), CooldownStore.getUserName(user), time));
+        }
+
+        /**
+         * Records that a loot time was removed
+         *
+         * @param chest The ID of the chest
+         * @param user The ID of the user
+         */
+        @Override
+        public void remove(int chest, int user) {
+            changes.add(new Change(REMOVE, getChest(chest), CooldownStore.getUserName(user)));
+        }
+
+        /**
+         * Records that every loot time of a chest was removed
+         *
+         * @param chest The ID of the chest
+         */
+        @Override
+        public void removeChest(int chest) {
+            changes.add(new Change(REMOVE_CHEST, getChest(chest)));
+        }
+
+        /**
+         * Records that every loot time of a user was removed
+         *
+         * @param user The ID of the user
+         */
+        @Override
+        public void removeUser(int user) {
+            changes.add(new Change(REMOVE_USER, CooldownStore.getUserName(user)));
+        }
+
+        /**
+         * Records that the loot times of a user were removed for every chest within a World
+         *
+         * @param world The name of the World
+         * @param user The ID of the user
+         */
+        @Override
+        public void removeWorld(String world, int user) {
+            //Chests are stored as world'x'y'z so match every chest which starts with the escaped World name
+            String pattern = world.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "'%";
+            changes.add(new Change(REMOVE_WORLD, CooldownStore.getUserName(user), pattern));
+        }
+
+        /**
+         * Records that every loot time was removed
+         */
+        @Override
+        public void clear() {
+            //Earlier changes no longer matter
+            changes.clear();
+            changes.add(new Change(CLEAR));
+        }
+
+        /**
+         * Returns true if changes have been recorded since they were last written
+         *
+         * @return true if save should be called
+         */
+        @Override
+        public boolean isModified() {
+            return !changes.isEmpty();
+        }
+
+        /**
+         * Writes the recorded changes in a single transaction on the I/O thread
+         *
+         * @param store The loot times of the PhatLoot (not needed)
+         */
+        @Override
+        public void save(CooldownTable store) {
+            if (changes.isEmpty()) {
+                return;
+            }
+            final ArrayList<Change> batch = changes;
+            changes = new ArrayList<>();
+            update("Failed to save the loot times of " + name, new Callable<Void>() {
+                @Override
+                public Void call() throws SQLException {
+                    write(batch);
+                    return null;
+                }
+            });
+        }
+
+        /**
+         * Deletes every row of the PhatLoot and inserts the loot times of the given store
+         *
+         * @param store The loot times of the PhatLoot
+         */
+        @Override
+        public void rewrite(CooldownTable store) {
+            final ArrayList<Change> batch = new ArrayList<>();
+            batch.add(new Change(CLEAR));
+            CooldownStore.Snapshot snapshot = store.snapshot();
+            for (int slot = 0; slot < snapshot.getCapacity(); slot++) {
+                long time = snapshot.getTime(slot);
+                if (time != CooldownStore.ABSENT) {
+                    batch.add(new Change(PUT, getChest(snapshot.getChest(slot)),
+                                         CooldownStore.getUserName(snapshot.getUser(slot)), time));
+                }
+            }
+            changes = new ArrayList<>();
+            update("Failed to save the loot times of " + name, new Callable<Void>() {
+                @Override
+                public Void call() throws SQLException {
+                    write(batch);
+                    return null;
+                }
+            });
+        }
+
+        /**
+         * Writes the recorded changes (there are no files to release)
+         */
+        @Override
+        public void close() {
+            save(null);
+        }
+
+        /**
+         * Discards the recorded changes and deletes every loot time of the PhatLoot
+         */
+        @Override
+        public void delete() {
+            changes.clear();
+            changes.add(new Change(CLEAR));
+            save(null);
+        }
+
+        /**
+         * Returns the name which the given chest is stored as
+         *
+         * @param chest The ID of the chest
+         * @return The String representation of the PhatLootChest or NO_CHEST
+         */
+        private String getChest(int chest) {
+            return chest == CooldownStore.NO_CHEST ? NO_CHEST : CooldownStore.getChestName(chest);
+        }
+
+        /**
+         * Executes the given changes in order, batching consecutive changes of the same type
+         *
+         * @param batch The changes to write
+         * @throws SQLException if the changes cannot be written
+         */
+        private void write(List<Change> batch) throws SQLException {
+            int start = 0;
+            while (start < batch.size()) {
+                int type = batch.get(start).type;
+                int end = start + 1;
+                while (end < batch.size() && batch.get(end).type == type) {
+                    end++;
+                }
+                List<Change> run = batch.subList(start, end);
+                if (type == PUT) {
+                    //Only the last time of each chest and player is kept and any existing row is replaced
+                    LinkedHashMap<List<Object>, Change> latest = new LinkedHashMap<>();
+                    for (Change change : run) {
+                        latest.put(Arrays.asList(change.values[0], change.values[1]), change);
+                    }
+                    ArrayList<Change> removals = new ArrayList<>();
+                    for (Change change : latest.values()) {
+                        removals.add(new Change(REMOVE, change.values[0], change.values[1]));
+                    }
+                    execute(REMOVE, removals);
+                    execute(PUT, latest.values());
+                } else {
+                    execute(type, run);
+                }
+                start = end;
+            }
+        }
+
+        /**
+         * Executes the statement of the given type once for each change as a single batch
+         *
+         * @param type The type of the changes
+         * @param run The changes to write
+         * @throws SQLException if the changes cannot be written
+         */
+        private void execute(int type, Collection<Change> run) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement(TIME_STATEMENTS[type])) {
+                for (Change change : run) {
+                    statement.setString(1, name);
+                    for (int i = 0; i < change.values.length; i++) {
+                        statement.setObject(i + 2, change.values[i]);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+}
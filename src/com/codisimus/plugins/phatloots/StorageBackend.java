@@ -0,0 +1,72 @@
+package com.codisimus.plugins.phatloots;
+
+import java.util.List;
+import java.util.Map;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * A StorageBackend persists the loot tables, linked chests and loot times of each PhatLoot.
+ * Every method is called from the main thread but writes may be completed on the PhatLoots I/O thread
+ *
+ * @author Codisimus
+ */
+public interface StorageBackend {
+    /**
+     * Reads the loot table of every PhatLoot
+     *
+     * @return PhatLoot name -> The YAML which contains the PhatLoot
+     */
+    Map<String, YamlConfiguration> loadLootTables();
+
+    /**
+     * Writes the loot table of a PhatLoot
+     *
+     * @param name The name of the PhatLoot
+     * @param data The PhatLoot as returned by PhatLootsIO.snapshot
+     */
+    void saveLootTable(String name, Object data);
+
+    /**
+     * Reads the chests which are linked to a PhatLoot
+     *
+     * @param name The name of the PhatLoot
+     * @return The world, x, y and z of each chest
+     */
+    List<String[]> loadChests(String name);
+
+    /**
+     * Writes the chests which are linked to a PhatLoot
+     *
+     * @param name The name of the PhatLoot
+     * @param chests The String representation of each PhatLootChest (world'x'y'z)
+     */
+    void saveChests(String name, List<String> chests);
+
+    /**
+     * Reads the loot times of a PhatLoot into the given store and returns the log of its future changes
+     *
+     * @param name The name of the PhatLoot
+     * @param store The loot times of the PhatLoot
+     * @return The LootTimesLog of the PhatLoot
+     */
+    LootTimesLog openLootTimes(String name, CooldownTable store);
+
+    /**
+     * Deletes the loot table and chests of a PhatLoot (loot times are deleted through its LootTimesLog)
+     *
+     * @param name The name of the PhatLoot
+     */
+    void deletePhatLoot(String name);
+
+    /**
+     * Returns true if no PhatLoots have been stored
+     *
+     * @return true if there are no loot tables
+     */
+    boolean isEmpty();
+
+    /**
+     * Writes any pending data and releases the storage
+     */
+    void close();
+}
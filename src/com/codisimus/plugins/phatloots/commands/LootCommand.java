@@ -1,6 +1,9 @@
 package com.codisimus.plugins.phatloots.commands;
 
+import com.codisimus.plugins.phatloots.ChunkScanner;
+import com.codisimus.plugins.phatloots.LootSimulator;
 import com.codisimus.plugins.phatloots.PhatLoot;
+import com.codisimus.plugins.phatloots.PhatLootChest;
 import com.codisimus.plugins.phatloots.PhatLoots;
 import com.codisimus.plugins.phatloots.PhatLootsConfig;
 import com.codisimus.plugins.phatloots.PhatLootsUtil;
@@ -9,6 +12,8 @@ import com.codisimus.plugins.phatloots.gui.InventoryListener;
 import com.codisimus.plugins.phatloots.loot.Experience;
 import com.codisimus.plugins.phatloots.loot.Loot;
 import com.codisimus.plugins.phatloots.loot.LootCollection;
+import com.codisimus.plugins.phatloots.loot.LootOdds;
+import com.codisimus.plugins.phatloots.loot.LootPlan;
 import com.codisimus.plugins.phatloots.loot.Money;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -16,6 +21,9 @@ import java.util.LinkedList;
 import java.util.List;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.Chest;
 import org.bukkit.command.CommandSender;
@@ -24,6 +32,7 @@ import org.bukkit.inventory.DoubleChestInventory;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.scheduler.BukkitRunnable;
 
 /**
  * Executes Player Commands
@@ -31,6 +40,9 @@ import org.bukkit.inventory.meta.ItemMeta;
  * @author Codisimus
  */
 public class LootCommand {
+    private static final int MAX_NEARBY_RADIUS = 512; //The largest radius of /loot nearby
+    private static final int MAX_SCAN_RADIUS = 1000; //The largest radius of /loot scan (within ChunkScanner.MAX_CHUNKS)
+    private static final int MAX_SIMULATED_ROLLS = 10000000; //The most rolls of /loot simulate
     public static boolean setUnlockable; //True if linked Chests should be set as unlockable by ChestLock
 
     @CodCommand(
@@ -530,7 +542,24 @@ public class LootCommand {
 
     @CodCommand(
         command = "list",
+        subcommand = "chunk",
         weight = 130,
+        usage = {
+            "§2<command>§b List the linked chests within your current chunk"
+        },
+        permission = "phatloots.list"
+    )
+    public boolean listChunk(Player player) {
+        Chunk chunk = player.getLocation().getChunk();
+        List<PhatLootChest> chests = PhatLootChest.getChests(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        player.sendMessage("§5Linked chests in chunk §6" + chunk.getX() + ", " + chunk.getZ() + "§5:");
+        listChests(player, chests);
+        return true;
+    }
+
+    @CodCommand(
+        command = "list",
+        weight = 130.1,
         usage = {
             "§2<command>§b List all PhatLoots"
         },
@@ -546,6 +575,33 @@ public class LootCommand {
         return true;
     }
 
+    @CodCommand(
+        command = "nearby",
+        weight = 135,
+        usage = {
+            "§2<command> [Radius]§b List the linked chests near you, nearest first",
+            "§7If Radius is not specified then chests within 16 blocks are listed"
+        },
+        permission = "phatloots.list"
+    )
+    public boolean nearby(Player player, int radius) {
+        if (radius < 0) {
+            return false;
+        }
+        if (radius > MAX_NEARBY_RADIUS) {
+            player.sendMessage("§4The radius may not be more than §6" + MAX_NEARBY_RADIUS);
+            return true;
+        }
+        List<PhatLootChest> chests = PhatLootChest.getChestsNear(player.getLocation(), radius);
+        player.sendMessage("§5Linked chests within §6" + radius + "§5 blocks:");
+        listChests(player, chests);
+        return true;
+    }
+    @CodCommand(command = "nearby", weight = 135.1)
+    public boolean nearby(Player player) {
+        return nearby(player, 16);
+    }
+
     @CodCommand(
         command = "gui",
         aliases = {"info"},
@@ -614,6 +670,32 @@ public class LootCommand {
         return give(sender, player, phatLoot, PhatLootsUtil.concatArgs(title));
     }
 
+    /**
+     * Sends the location and linked PhatLoots of each linked chest to the given Player
+     *
+     * @param player The Player to send the list to
+     * @param chests The PhatLootChests to list (chests without PhatLoots are skipped)
+     */
+    private static void listChests(Player player, List<PhatLootChest> chests) {
+        int count = 0;
+        for (PhatLootChest chest : chests) {
+            List<PhatLoot> phatLoots = chest.getLinkedPhatLoots();
+            if (phatLoots.isEmpty()) {
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (PhatLoot phatLoot : phatLoots) {
+                sb.append(sb.length() == 0 ? "" : ", ").append(phatLoot.name);
+            }
+            player.sendMessage("§2" + chest.getX() + ", " + chest.getY() + ", " + chest.getZ()
+                    + " §b(" + (int) Math.sqrt(chest.distanceSquared(player.getLocation())) + "m)§2:§6 " + sb);
+            count++;
+        }
+        if (count == 0) {
+            player.sendMessage("§5None found");
+        }
+    }
+
     @CodCommand(
         command = "reset",
         weight = 160,
@@ -703,4 +785,159 @@ public class LootCommand {
         PhatLoots.rl(sender);
         return true;
     }
+
+    @CodCommand(
+        command = "simulate",
+        weight = 190,
+        usage = {
+            "§2<command> <PhatLoot> <Rolls> [LootingBonus]§b Roll for loot many times and report the drop rates"
+        },
+        permission = "phatloots.simulate"
+    )
+    public boolean simulate(CommandSender sender, PhatLoot phatLoot, int rolls, double lootingBonus) {
+        if (rolls <= 0) {
+            return false;
+        }
+        if (rolls > MAX_SIMULATED_ROLLS) {
+            sender.sendMessage("§4The number of rolls may not be more than §6" + MAX_SIMULATED_ROLLS);
+            return true;
+        }
+        if (LootSimulator.simulate(sender, phatLoot, rolls, lootingBonus)) {
+            sender.sendMessage("§5Simulating §6" + rolls + "§5 rolls of PhatLoot §6" + phatLoot.name + "§5...");
+        } else {
+            sender.sendMessage("§4A simulation is already in progress");
+        }
+        return true;
+    }
+    @CodCommand(command = "simulate", weight = 190.1)
+    public boolean simulate(CommandSender sender, PhatLoot phatLoot, int rolls) {
+        return simulate(sender, phatLoot, rolls, 0);
+    }
+
+    @CodCommand(
+        command = "odds",
+        weight = 200,
+        usage = {
+            "§2<command> <PhatLoot> [LootingBonus]§b List the exact chance of each Loot being looted"
+        },
+        permission = "phatloots.odds"
+    )
+    public boolean odds(final CommandSender sender, final PhatLoot phatLoot, final double lootingBonus) {
+        //Compile the plan on the server thread and calculate the odds off of it
+        final LootPlan plan = phatLoot.getLootPlan();
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                final LootOdds odds = plan.getOdds(lootingBonus);
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        sendOdds(sender, phatLoot, odds);
+                    }
+                }.runTask(PhatLoots.plugin);
+            }
+        }.runTaskAsynchronously(PhatLoots.plugin);
+        return true;
+    }
+    @CodCommand(command = "odds", weight = 200.1)
+    public boolean odds(CommandSender sender, PhatLoot phatLoot) {
+        return odds(sender, phatLoot, 0);
+    }
+
+    /**
+     * Lists the odds of each Loot of the given PhatLoot
+     *
+     * @param sender The CommandSender who requested the odds
+     * @param phatLoot The PhatLoot whose odds were calculated
+     * @param odds The calculated LootOdds
+     */
+    private static void sendOdds(CommandSender sender, PhatLoot phatLoot, LootOdds odds) {
+        sender.sendMessage("§5Odds of PhatLoot §6" + phatLoot.name + "§5 per loot"
+                + (odds.isExact() ? "" : " §7(some collections are approximated)"));
+        for (Loot loot : odds.getLoot()) {
+            sender.sendMessage("§2" + loot.toString() + "§2:§b "
+                    + String.format("%.3f%%", odds.getProbability(loot) * 100)
+                    + " §2Avg Count:§b " + String.format("%.3f", odds.getExpectedCount(loot)));
+        }
+        sender.sendMessage("§2Avg Money:§b " + String.format("%.2f", odds.getExpectedMoney())
+                + " §2Avg Experience:§b " + String.format("%.2f", odds.getExpectedExp()));
+    }
+
+    @CodCommand(
+        command = "scan",
+        subcommand = "cancel",
+        weight = 210,
+        usage = {
+            "§2<command>§b Stop the scan which is in progress"
+        },
+        permission = "phatloots.scan"
+    )
+    public boolean scanCancel(CommandSender sender) {
+        if (ChunkScanner.cancelScan()) {
+            sender.sendMessage("§5Cancelling the scan...");
+        } else {
+            sender.sendMessage("§4There is no scan in progress");
+        }
+        return true;
+    }
+
+    @CodCommand(
+        command = "scan",
+        weight = 210.1,
+        usage = {
+            "§2<command> <PhatLoot> <Radius>§b Link every linkable Block within Radius blocks of you",
+            "§2<command> <PhatLoot> <World> <x1> <z1> <x2> <z2>§b Link every linkable Block within the region",
+            "§7The scan runs in the background and the chests are saved when it is done"
+        },
+        permission = "phatloots.scan"
+    )
+    public boolean scan(Player player, PhatLoot phatLoot, int radius) {
+        if (radius < 0) {
+            return false;
+        }
+        if (radius > MAX_SCAN_RADIUS) {
+            player.sendMessage("§4The radius may not be more than §6" + MAX_SCAN_RADIUS);
+            return true;
+        }
+        Location location = player.getLocation();
+        return scan(player, phatLoot, location.getWorld(),
+                    location.getBlockX() - radius, location.getBlockZ() - radius,
+                    location.getBlockX() + radius, location.getBlockZ() + radius);
+    }
+    @CodCommand(command = "scan", weight = 210.2)
+    public boolean scan(CommandSender sender, PhatLoot phatLoot, String worldName, int x1, int z1, int x2, int z2) {
+        World world = Bukkit.getWorld(worldName);
+        if (world == null) {
+            sender.sendMessage("§4The World §6" + worldName + "§4 is not loaded");
+            return true;
+        }
+        return scan(sender, phatLoot, world, x1, z1, x2, z2);
+    }
+
+    /**
+     * Starts a scan and tells the sender whether it started
+     *
+     * @param sender The CommandSender who requested the scan
+     * @param phatLoot The PhatLoot to link the found Blocks to
+     * @param world The World to scan
+     * @param x1 The x-coordinate of one corner of the region
+     * @param z1 The z-coordinate of one corner of the region
+     * @param x2 The x-coordinate of the opposite corner of the region
+     * @param z2 The z-coordinate of the opposite corner of the region
+     * @return true
+     */
+    private static boolean scan(CommandSender sender, PhatLoot phatLoot, World world, int x1, int z1, int x2, int z2) {
+        long chunks = ((long) (Math.max(x1, x2) >> 4) - (Math.min(x1, x2) >> 4) + 1)
+                      * ((long) (Math.max(z1, z2) >> 4) - (Math.min(z1, z2) >> 4) + 1);
+        if (chunks > ChunkScanner.MAX_CHUNKS) {
+            sender.sendMessage("§4The region may not cover more than §6" + ChunkScanner.MAX_CHUNKS + "§4 chunks");
+            return true;
+        }
+        if (ChunkScanner.scan(sender, phatLoot, world, x1, z1, x2, z2)) {
+            sender.sendMessage("§5Scanning for linkable Blocks to link to PhatLoot §6" + phatLoot.name + "§5...");
+        } else {
+            sender.sendMessage("§4Another scan is already in progress, use §2/loot scan cancel§4 to stop it");
+        }
+        return true;
+    }
 }
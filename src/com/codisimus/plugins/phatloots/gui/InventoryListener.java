@@ -92,7 +92,7 @@ public class InventoryListener implements Listener {
         } else { //Fixes glitch of not detecting inventory close
             if (!event.getInventory().getTitle().contains("Loot")
                     && !event.getInventory().getTitle().contains("Collection")) {
-                infoViewers.remove(playerUUID).save(); //Save the PhatLoot in case it has been modified
+                infoViewers.remove(playerUUID).saveIfModified(); //Save the PhatLoot if it has been modified
                 pageStacks.get(playerUUID).empty();
                 pageStacks.remove(playerUUID);
                 return;
@@ -119,9 +119,13 @@ public class InventoryListener implements Listener {
                 if (loot == null) {
                     if (slot == lootList.size()) { //Put down Loot
                         lootList.add(holding.remove(playerUUID));
+                        Loot.tableModified();
+                        phatLoot.setModified();
                         event.setCurrentItem(event.getCursor());
                     } else if (slot > lootList.size() && slot < TOOL_SLOT) { //Support adding the Loot to any slot
                         lootList.add(holding.remove(playerUUID));
+                        Loot.tableModified();
+                        phatLoot.setModified();
                         inv.setItem(lootList.size() - 1, event.getCursor());
                         player.updateInventory();
                     } else if (slot == -999) { //Remove Loot
@@ -186,6 +190,8 @@ public class InventoryListener implements Listener {
         /** Check if a Button was Clicked **/
         if (buttons.containsKey(slot)) {
             if (buttons.get(slot).onClick(event.getClick(), inv, phatLoot, lootList)) {
+                Loot.tableModified();
+                phatLoot.setModified();
                 refreshPage(player, inv, lootList);
             }
             return;
@@ -221,6 +227,8 @@ public class InventoryListener implements Listener {
                     if (slot > SIZE) {
                         ItemStack item = stack.clone();
                         lootList.add(new Item(item, 0));
+                        Loot.tableModified();
+                        phatLoot.setModified();
                         refreshPage(player, inv, lootList);
                     }
                 }
@@ -329,6 +337,7 @@ public class InventoryListener implements Listener {
                     return;
                 }
 
+                phatLoot.setModified();
                 info.setLore(details);
                 infoStack.setItemMeta(info);
                 event.setCurrentItem(infoStack);
@@ -345,6 +354,7 @@ public class InventoryListener implements Listener {
                     if (holding.containsKey(playerUUID)) { //Place Loot in Collection
                         Loot l = holding.remove(playerUUID);
                         ((LootCollection) loot).addLoot(l);
+                        phatLoot.setModified();
                         event.setCursor(null);
                     } else { //Enter LootCollection
                         viewCollection(player, ((LootCollection) loot).name);
@@ -357,10 +367,14 @@ public class InventoryListener implements Listener {
                     Loot l = holding.remove(playerUUID);
                     holding.put(playerUUID, lootList.get(slot));
                     lootList.set(slot, l);
+                    Loot.tableModified();
+                    phatLoot.setModified();
                     event.setCurrentItem(event.getCursor()); //Put down Loot
                     event.setCursor(stack); //Pick up new Loot
                 } else { //Pick up Loot
                     holding.put(playerUUID, lootList.remove(slot));
+                    Loot.tableModified();
+                    phatLoot.setModified();
                     event.setCursor(stack);
                     refreshPage(player, inv, lootList); //Shifts remaining loot down
                 }
@@ -374,16 +388,22 @@ public class InventoryListener implements Listener {
                         Loot l = holding.remove(playerUUID);
                         holding.put(playerUUID, lootList.get(slot));
                         lootList.set(slot, l);
+                        Loot.tableModified();
+                        phatLoot.setModified();
                         event.setCurrentItem(event.getCursor()); //Put down Loot
                         event.setCursor(stack); //Pick up new Loot
                     } else { //Pick up Loot
                         holding.put(playerUUID, lootList.remove(slot));
+                        Loot.tableModified();
+                        phatLoot.setModified();
                         event.setCursor(stack);
                         refreshPage(player, inv, lootList); //Shifts remaining loot down
                     }
                 } else if (slot > 0) { //Move Loot Left
                     lootList.set(slot, lootList.get(slot - 1));
                     lootList.set(slot - 1, loot);
+                    Loot.tableModified();
+                    phatLoot.setModified();
                     refreshPage(player, inv, lootList);
                 }
                 break;
@@ -391,11 +411,15 @@ public class InventoryListener implements Listener {
                 if (slot < lootList.size() - 1) {
                     lootList.set(slot, lootList.get(slot + 1));
                     lootList.set(slot + 1, loot);
+                    Loot.tableModified();
+                    phatLoot.setModified();
                     refreshPage(player, inv, lootList);
                 }
                 break;
             case MIDDLE: //Remove Loot
                 lootList.remove(slot);
+                Loot.tableModified();
+                phatLoot.setModified();
                 refreshPage(player, inv, lootList); //Shifts remaining loot down
             }
             break;
@@ -419,11 +443,13 @@ public class InventoryListener implements Listener {
                 break;
             default:
                 if (loot.onToggle(event.getClick())) {
+                    Loot.tableModified();
                     break;
                 } else {
                     return;
                 }
             }
+            phatLoot.setModified();
             event.setCurrentItem(loot.getInfoStack());
             break;
 
@@ -453,6 +479,8 @@ public class InventoryListener implements Listener {
                 break;
             case MIDDLE: //Set amount to 1
                 if (loot.resetAmount()) {
+                    Loot.tableModified();
+                    phatLoot.setModified();
                     event.setCurrentItem(loot.getInfoStack());
                 }
                 return;
@@ -461,12 +489,16 @@ public class InventoryListener implements Listener {
             }
 
             if (loot.modifyAmount(amount, both)) {
+                Loot.tableModified();
+                phatLoot.setModified();
                 event.setCurrentItem(loot.getInfoStack());
             }
             break;
 
         default:
             if (loot.onToolClick(tool, event.getClick())) {
+                Loot.tableModified();
+                phatLoot.setModified();
                 refreshPage(player, inv, lootList);
             }
             break;
@@ -493,7 +525,7 @@ public class InventoryListener implements Listener {
             //The Player has finished switching pages
             switchingPages.remove(playerUUID);
         } else { //Closing info view
-            infoViewers.remove(playerUUID).save(); //Save the PhatLoot in case it has been modified
+            infoViewers.remove(playerUUID).saveIfModified(); //Save the PhatLoot if it has been modified
             pageStacks.get(playerUUID).empty();
             pageStacks.remove(playerUUID);
         }
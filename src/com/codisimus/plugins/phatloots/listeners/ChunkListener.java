@@ -0,0 +1,35 @@
+package com.codisimus.plugins.phatloots.listeners;
+
+import com.codisimus.plugins.phatloots.PhatLootChest;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+
+/**
+ * Listens for chunks being loaded so that the PhatLootChests within them may be read
+ *
+ * @author Codisimus
+ */
+public class ChunkListener implements Listener {
+    /**
+     * Reads the PhatLootChests within the loaded Chunk
+     *
+     * @param event The ChunkLoadEvent that occurred
+     */
+    @EventHandler (priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        PhatLootChest.resolveChests(event.getChunk());
+    }
+
+    /**
+     * Reads the PhatLootChests within the spawn chunks of the loaded World
+     *
+     * @param event The WorldLoadEvent that occurred
+     */
+    @EventHandler (priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        PhatLootChest.resolveChests(event.getWorld());
+    }
+}
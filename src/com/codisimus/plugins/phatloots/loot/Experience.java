@@ -24,8 +24,8 @@ import org.bukkit.inventory.meta.ItemMeta;
  */
 @SerializableAs("Experience")
 public class Experience extends Loot {
-    private int lowerAmount;
-    private int upperAmount;
+    int lowerAmount;
+    int upperAmount;
 
     /**
      * Adds Experience as Loot
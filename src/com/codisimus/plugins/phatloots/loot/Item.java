@@ -3,9 +3,6 @@ package com.codisimus.plugins.phatloots.loot;
 import com.codisimus.plugins.phatloots.PhatLoot;
 import com.codisimus.plugins.phatloots.PhatLoots;
 import com.codisimus.plugins.phatloots.PhatLootsUtil;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.util.*;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -24,11 +21,6 @@ import org.bukkit.inventory.meta.ItemMeta;
  */
 @SerializableAs("Item")
 public class Item extends Loot {
-    /* SECTIONS */
-    private static final String BASE_VALUES = "BaseValues";
-    private static final String ENCHANTMENT_VALUES = "EnchantmentValues";
-    private static final String TIERS = "TIERS";
-    private static final String DIVIDER = ".";
     /* TAGS */
     private static final String ARMOR = "ARMOR";
     private static final String SWORD = "SWORD";
@@ -112,6 +104,8 @@ public class Item extends Loot {
         Material.DIAMOND_HOE, Material.IRON_HOE, Material.GOLD_HOE,
         Material.STONE_HOE, Material.WOOD_HOE
     );
+    private static volatile EnumMap<Material, EnchantmentDistribution[]> enchantmentDistributions = new EnumMap<>(Material.class);
+    private static volatile TierTable tierTable = new TierTable(null);
     public static int tierNotify;
     public static FileConfiguration loreConfig;
     public static FileConfiguration tiersConfig;
@@ -127,6 +121,80 @@ public class Item extends Loot {
     public static String rangeDefenseString;
     public static String blastDefenseString;
     public static String fallDefenseString;
+    private static final int MAX_RENDERED_LORES = 256;
+    private static final LinkedHashMap<RenderedLoreKey, List<String>> renderedLores = new LinkedHashMap<RenderedLoreKey, List<String>>(64, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<RenderedLoreKey, List<String>> eldest) {
+            return size() > MAX_RENDERED_LORES;
+        }
+    };
+    private static long renderedLoreHits;
+    private static long renderedLoreMisses;
+
+    /**
+     * The Material, Enchantments and lore which damage tags are rendered from
+     */
+    private static class RenderedLoreKey {
+        private final Material mat;
+        private final Map<Enchantment, Integer> enchantments;
+        private final List<String> lore;
+        private final int hash;
+
+        private RenderedLoreKey(Material mat, Map<Enchantment, Integer> enchantments, List<String> lore) {
+            this.mat = mat;
+            this.enchantments = enchantments;
+            this.lore = lore;
+            hash = (mat.hashCode() * 31 + enchantments.hashCode()) * 31 + lore.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RenderedLoreKey)) {
+                return false;
+            }
+            RenderedLoreKey key = (RenderedLoreKey) obj;
+            return mat == key.mat && enchantments.equals(key.enchantments) && lore.equals(key.lore);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The chances of each level of an Enchantment as listed in enchantments.yml
+     */
+    private static class EnchantmentDistribution {
+        private final Enchantment enchantment;
+        private final double[] cumulative; //Running total of the percentages of each level
+
+        private EnchantmentDistribution(Enchantment enchantment, double[] cumulative) {
+            this.enchantment = enchantment;
+            this.cumulative = cumulative;
+        }
+
+        /**
+         * Rolls to discover which level the Enchantment should be
+         *
+         * @return The level of the Enchantment or 0 if it should not be added
+         */
+        private int rollForLevel() {
+            //Find the first level whose running total exceeds the roll
+            double roll = roll();
+            int low = 0;
+            int high = cumulative.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] > roll) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
 
     public ItemStack item;
     public int amountBonus = 0;
@@ -186,6 +254,62 @@ public class Item extends Loot {
         }
     }
 
+    /**
+     * Compiles enchantmentConfig into distributions for each Material that may be auto enchanted.
+     * This should be called each time that enchantments.yml is loaded
+     */
+    public static void compileEnchantments() {
+        EnumMap<Material, EnchantmentDistribution[]> distributions = new EnumMap<>(Material.class);
+        compileEnchantments(distributions, ARMOR_MATERIAL_SET, ARMOR, ARMOR_ENCHANTMENTS);
+        compileEnchantments(distributions, SWORD_MATERIAL_SET, SWORD, SWORD_ENCHANTMENTS);
+        compileEnchantments(distributions, AXE_MATERIAL_SET, AXE, AXE_ENCHANTMENTS);
+        compileEnchantments(distributions, PICKAXE_MATERIAL_SET, PICKAXE, PICKAXE_ENCHANTMENTS);
+        compileEnchantments(distributions, SPADE_MATERIAL_SET, SPADE, SPADE_ENCHANTMENTS);
+        compileEnchantments(distributions, HOE_MATERIAL_SET, HOE, HOE_ENCHANTMENTS);
+        compileEnchantments(distributions, EnumSet.of(Material.BOW), BOW, BOW_ENCHANTMENTS);
+        enchantmentDistributions = distributions;
+    }
+
+    /**
+     * Compiles tiersConfig into tables of scores and thresholds.
+     * This should be called each time that tiers.yml is loaded
+     */
+    public static void compileTiers() {
+        tierTable = new TierTable(tiersConfig);
+    }
+
+    /**
+     * Compiles the distributions of the given type of Materials
+     *
+     * @param distributions The map to add the distributions to
+     * @param materials The Materials of the type
+     * @param type The section of enchantments.yml for the type
+     * @param enchantments The Enchantments which may be added to the type
+     */
+    private static void compileEnchantments(EnumMap<Material, EnchantmentDistribution[]> distributions,
+            EnumSet<Material> materials, String type, Enchantment[] enchantments) {
+        ArrayList<EnchantmentDistribution> list = new ArrayList<>();
+        for (Enchantment enchantment : enchantments) {
+            String key = type + '.' + enchantment.getName();
+            if (enchantmentConfig != null && enchantmentConfig.contains(key)) {
+                ConfigurationSection config = enchantmentConfig.getConfigurationSection(key);
+                Set<String> levels = config.getKeys(false);
+                double[] cumulative = new double[levels.size()];
+                double totalPercent = 0.0D;
+                int i = 0;
+                for (String string : levels) {
+                    totalPercent += config.getDouble(string);
+                    cumulative[i++] = totalPercent;
+                }
+                list.add(new EnchantmentDistribution(enchantment, cumulative));
+            }
+        }
+        EnchantmentDistribution[] array = list.toArray(new EnchantmentDistribution[list.size()]);
+        for (Material mat : materials) {
+            distributions.put(mat, array);
+        }
+    }
+
     /**
      * Adds the item to the item list
      *
@@ -330,53 +454,13 @@ public class Item extends Loot {
         Material mat = clone.getType();
 
         if (autoEnchant) {
-            //Select Enchantments based on the Material
-            String type;
-            Enchantment[] enchantments;
-            if (ARMOR_MATERIAL_SET.contains(mat)) {
-                type = ARMOR;
-                enchantments = ARMOR_ENCHANTMENTS;
-            } else if (SWORD_MATERIAL_SET.contains(mat)) {
-                type = SWORD;
-                enchantments = SWORD_ENCHANTMENTS;
-            } else if (AXE_MATERIAL_SET.contains(mat)) {
-                type = AXE;
-                enchantments = AXE_ENCHANTMENTS;
-            } else if (PICKAXE_MATERIAL_SET.contains(mat)) {
-                type = PICKAXE;
-                enchantments = PICKAXE_ENCHANTMENTS;
-            } else if (SPADE_MATERIAL_SET.contains(mat)) {
-                type = SPADE;
-                enchantments = SPADE_ENCHANTMENTS;
-            } else if (HOE_MATERIAL_SET.contains(mat)) {
-                type = HOE;
-                enchantments = HOE_ENCHANTMENTS;
-            } else if (mat == Material.BOW) {
-                type = BOW;
-                enchantments = BOW_ENCHANTMENTS;
-            } else {
-                type = "";
-                enchantments = new Enchantment[0];
-            }
-
-            for (Enchantment enchantment : enchantments) {
-                String key = type + '.' + enchantment.getName();
-                if (enchantmentConfig.contains(key)) {
-                    //Roll to discover which level the enchantment should be
-                    ConfigurationSection config = enchantmentConfig.getConfigurationSection(key);
-                    double totalPercent = 0.0D;
-                    int level = 0;
-                    double roll = roll();
-                    for (String string : config.getKeys(false)) {
-                        totalPercent += config.getDouble(string);
-                        if (totalPercent > roll) {
-                            break;
-                        }
-                        level++;
-                    }
-
+            //Roll for each Enchantment of the Material using the compiled distributions
+            EnchantmentDistribution[] distributions = enchantmentDistributions.get(mat);
+            if (distributions != null) {
+                for (EnchantmentDistribution distribution : distributions) {
+                    int level = distribution.rollForLevel();
                     if (level > 0) {
-                        clone.addUnsafeEnchantment(enchantment, level);
+                        clone.addUnsafeEnchantment(distribution.enchantment, level);
                     }
                 }
             }
@@ -400,36 +484,13 @@ public class Item extends Loot {
             StringBuilder nameBuilder = new StringBuilder();
             if (randomLore) {
                 String folder = clone.getType() + clone.getEnchantments().toString();
-                File dir = new File(PhatLoots.dataFolder, "Item Descriptions" + File.separator + folder);
-                if (dir.exists()) {
-                    //Choose a random file
-                    File[] files = dir.listFiles();
-                    File file = files[PhatLootsUtil.rollForInt(files.length)];
-
-                    if (file.exists()) {
-                        try (FileReader fReader = new FileReader(file)) {
-                            try (BufferedReader bReader = new BufferedReader(fReader)) {
-                                String line = bReader.readLine();
-                                if (line != null) {
-                                    if (line.charAt(0) == '&') {
-                                        line = line.replace('&', '§');
-                                    }
-
-                                    nameBuilder.append(line);
-
-                                    List lore = new LinkedList();
-                                    while ((line = bReader.readLine()) != null) {
-                                        line = line.replace('&', '§');
-                                        lore.add(line);
-                                    }
-                                    meta.setLore(lore);
-                                }
-                            }
-                        } catch (Exception ex) {
-                            //Do nothing
-                        }
-                    } else {
-                        PhatLoots.logger.severe("The Item Description " + file.getName() + " cannot be read");
+                LoreCorpus.Description[] descriptions = LoreCorpus.getDescriptions(folder);
+                if (descriptions != null) {
+                    //Choose a random description
+                    LoreCorpus.Description description = descriptions[PhatLootsUtil.rollForInt(descriptions.length - 1)];
+                    if (description != null) {
+                        nameBuilder.append(description.getName());
+                        meta.setLore(description.getLore());
                     }
                 } else {
                     PhatLoots.logger.severe("You are attempting to use an undocumented feature (Random Lore), please contact Codisimus if you actually want to know how to use this.");
@@ -452,172 +513,242 @@ public class Item extends Loot {
         }
 
         if (damageTags && meta != null && meta.hasLore()) {
-            //Check for damage tags based on the Material
-            List<String> lore = meta.getLore();
-            ListIterator<String> itr = lore.listIterator();
-            if (ARMOR_MATERIAL_SET.contains(mat)) {
-                while (itr.hasNext()) {
-                    String string = itr.next();
-                    //Calculate protection based on the enchantments
-                    switch (string) {
-                    case THORNS:
-                        if (clone.containsEnchantment(Enchantment.THORNS)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.THORNS);
-                            itr.set(thornsString.replace("<chance>", String.valueOf(15 * lvl)));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    case DEFENSE:
-                        int amount = getBaseArmor(clone.getType());
-                        if (clone.containsEnchantment(Enchantment.PROTECTION_ENVIRONMENTAL)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.PROTECTION_ENVIRONMENTAL);
-                            int epf = (int) Math.floor((6 + lvl * lvl) * 0.75 / 3);
-                            int low = amount + (int) Math.ceil(epf / 2);
-                            int high = amount + epf;
-                            itr.set(defenseString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.set(defenseString.replace("<amount>", String.valueOf(amount)));
-                        }
-                        break;
-                    case FIRE_DEFENSE:
-                        if (clone.containsEnchantment(Enchantment.PROTECTION_FIRE)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.PROTECTION_FIRE);
-                            int epf = (int) Math.floor((6 + lvl * lvl) * 1.25 / 3);
-                            int low = (int) Math.ceil(epf / 2);
-                            int high = epf;
-                            itr.set(fireDefenseString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    case RANGE_DEFENSE:
-                        if (clone.containsEnchantment(Enchantment.PROTECTION_PROJECTILE)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.PROTECTION_PROJECTILE);
-                            int epf = (int) Math.floor((6 + lvl * lvl) * 1.5 / 3);
-                            int low = (int) Math.ceil(epf / 2);
-                            int high = epf;
-                            itr.set(rangeDefenseString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    case BLAST_DEFENSE:
-                        if (clone.containsEnchantment(Enchantment.PROTECTION_EXPLOSIONS)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.PROTECTION_EXPLOSIONS);
-                            int epf = (int) Math.floor((6 + lvl * lvl) * 1.5 / 3);
-                            int low = (int) Math.ceil(epf / 2);
-                            int high = epf;
-                            itr.set(blastDefenseString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    case FALL_DEFENSE:
-                        if (clone.containsEnchantment(Enchantment.PROTECTION_FALL)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.PROTECTION_FALL);
-                            int epf = (int) Math.floor((6 + lvl * lvl) * 2.5 / 3);
-                            int low = (int) Math.ceil(epf / 2);
-                            int high = epf;
-                            itr.set(fallDefenseString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    default:
-                        break;
+            //Apply the rendered lore to the item
+            meta.setLore(getRenderedLore(mat, clone.getEnchantments(), meta.getLore()));
+            clone.setItemMeta(meta);
+        }
+
+        return clone;
+    }
+
+    /**
+     * Returns the given lore with each damage tag replaced.
+     * Rendered lore is cached by Material, Enchantments and lore so that repeated drops of the same gear do not recalculate it
+     *
+     * @param mat The Material of the item
+     * @param enchantments The Enchantments of the item and their levels
+     * @param lore The lore of the item which may contain damage tags
+     * @return The rendered lore (this List should not be modified)
+     */
+    private static List<String> getRenderedLore(Material mat, Map<Enchantment, Integer> enchantments, List<String> lore) {
+        RenderedLoreKey key = new RenderedLoreKey(mat, enchantments, lore);
+        synchronized (renderedLores) {
+            List<String> rendered = renderedLores.get(key);
+            if (rendered != null) {
+                renderedLoreHits++;
+                return rendered;
+            }
+            renderedLoreMisses++;
+        }
+
+        List<String> rendered = new ArrayList<>(lore);
+        renderDamageTags(mat, enchantments, rendered);
+        rendered = Collections.unmodifiableList(rendered);
+        synchronized (renderedLores) {
+            renderedLores.put(key, rendered);
+        }
+        return rendered;
+    }
+
+    /**
+     * Replaces each damage tag of the given lore
+     *
+     * @param mat The Material of the item
+     * @param enchantments The Enchantments of the item and their levels
+     * @param lore The lore which will be modified
+     */
+    private static void renderDamageTags(Material mat, Map<Enchantment, Integer> enchantments, List<String> lore) {
+        //Check for damage tags based on the Material
+        ListIterator<String> itr = lore.listIterator();
+        if (ARMOR_MATERIAL_SET.contains(mat)) {
+            while (itr.hasNext()) {
+                String string = itr.next();
+                //Calculate protection based on the enchantments
+                switch (string) {
+                case THORNS:
+                    if (enchantments.containsKey(Enchantment.THORNS)) {
+                        int lvl = enchantments.get(Enchantment.THORNS);
+                        itr.set(thornsString.replace("<chance>", String.valueOf(15 * lvl)));
+                    } else {
+                        itr.remove();
+                    }
+                    break;
+                case DEFENSE:
+                    int amount = getBaseArmor(mat);
+                    if (enchantments.containsKey(Enchantment.PROTECTION_ENVIRONMENTAL)) {
+                        int lvl = enchantments.get(Enchantment.PROTECTION_ENVIRONMENTAL);
+                        int epf = (int) Math.floor((6 + lvl * lvl) * 0.75 / 3);
+                        int low = amount + (int) Math.ceil(epf / 2);
+                        int high = amount + epf;
+                        itr.set(defenseString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.set(defenseString.replace("<amount>", String.valueOf(amount)));
+                    }
+                    break;
+                case FIRE_DEFENSE:
+                    if (enchantments.containsKey(Enchantment.PROTECTION_FIRE)) {
+                        int lvl = enchantments.get(Enchantment.PROTECTION_FIRE);
+                        int epf = (int) Math.floor((6 + lvl * lvl) * 1.25 / 3);
+                        int low = (int) Math.ceil(epf / 2);
+                        int high = epf;
+                        itr.set(fireDefenseString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.remove();
+                    }
+                    break;
+                case RANGE_DEFENSE:
+                    if (enchantments.containsKey(Enchantment.PROTECTION_PROJECTILE)) {
+                        int lvl = enchantments.get(Enchantment.PROTECTION_PROJECTILE);
+                        int epf = (int) Math.floor((6 + lvl * lvl) * 1.5 / 3);
+                        int low = (int) Math.ceil(epf / 2);
+                        int high = epf;
+                        itr.set(rangeDefenseString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.remove();
+                    }
+                    break;
+                case BLAST_DEFENSE:
+                    if (enchantments.containsKey(Enchantment.PROTECTION_EXPLOSIONS)) {
+                        int lvl = enchantments.get(Enchantment.PROTECTION_EXPLOSIONS);
+                        int epf = (int) Math.floor((6 + lvl * lvl) * 1.5 / 3);
+                        int low = (int) Math.ceil(epf / 2);
+                        int high = epf;
+                        itr.set(blastDefenseString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.remove();
                     }
+                    break;
+                case FALL_DEFENSE:
+                    if (enchantments.containsKey(Enchantment.PROTECTION_FALL)) {
+                        int lvl = enchantments.get(Enchantment.PROTECTION_FALL);
+                        int epf = (int) Math.floor((6 + lvl * lvl) * 2.5 / 3);
+                        int low = (int) Math.ceil(epf / 2);
+                        int high = epf;
+                        itr.set(fallDefenseString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.remove();
+                    }
+                    break;
+                default:
+                    break;
                 }
-            } else if (mat == Material.BOW) {
-                while (itr.hasNext()) {
-                    String string = itr.next();
-                    //Calculate damages based on the enchantments
-                    switch (string) {
-                    case DAMAGE:
-                        int baseLow = 1;
-                        int baseHigh = 10;
-                        if (clone.containsEnchantment(Enchantment.DAMAGE_ALL)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.ARROW_DAMAGE);
-                            double bonus = lvl == 0
-                                    ? 0
-                                    : 0.25;
-                            bonus += (0.25 * lvl);
-                            int low = baseLow + (int) (baseLow * bonus);
-                            int high = baseHigh + (int) (baseHigh * bonus);
-                            itr.set(damageString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.set(damageString.replace("<amount>", baseLow + "-" + baseHigh));
-                        }
-                        break;
-                    case FIRE:
-                        if (clone.containsEnchantment(Enchantment.ARROW_FIRE)) {
-                            itr.set(fireString.replace("<amount>", "4"));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    default:
-                        break;
+            }
+        } else if (mat == Material.BOW) {
+            while (itr.hasNext()) {
+                String string = itr.next();
+                //Calculate damages based on the enchantments
+                switch (string) {
+                case DAMAGE:
+                    int baseLow = 1;
+                    int baseHigh = 10;
+                    if (enchantments.containsKey(Enchantment.DAMAGE_ALL)) {
+                        int lvl = enchantments.get(Enchantment.ARROW_DAMAGE);
+                        double bonus = lvl == 0
+                                ? 0
+                                : 0.25;
+                        bonus += (0.25 * lvl);
+                        int low = baseLow + (int) (baseLow * bonus);
+                        int high = baseHigh + (int) (baseHigh * bonus);
+                        itr.set(damageString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.set(damageString.replace("<amount>", baseLow + "-" + baseHigh));
+                    }
+                    break;
+                case FIRE:
+                    if (enchantments.containsKey(Enchantment.ARROW_FIRE)) {
+                        itr.set(fireString.replace("<amount>", "4"));
+                    } else {
+                        itr.remove();
                     }
+                    break;
+                default:
+                    break;
                 }
-            } else {
-                while (itr.hasNext()) {
-                    String string = itr.next();
-                    //Calculate damages based on the enchantments
-                    switch (string) {
-                    case DAMAGE:
-                        int baseLow = getBaseDamage(clone.getType());
-                        int baseHigh = (int) (baseLow * 1.5D) + 2;
-                        if (clone.containsEnchantment(Enchantment.DAMAGE_ALL)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.DAMAGE_ALL);
-                            int low = baseLow + lvl;
-                            int high = baseHigh + 3 * lvl;
-                            itr.set(damageString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.set(damageString.replace("<amount>", baseLow + "-" + baseHigh));
-                        }
-                        break;
-                    case HOLY:
-                        if (clone.containsEnchantment(Enchantment.DAMAGE_UNDEAD)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.DAMAGE_UNDEAD);
-                            int low = lvl;
-                            int high = 4 * lvl;
-                            itr.set(holyString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    case BUG:
-                        if (clone.containsEnchantment(Enchantment.DAMAGE_ARTHROPODS)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.DAMAGE_ARTHROPODS);
-                            int low = lvl;
-                            int high = 4 * lvl;
-                            itr.set(bugString.replace("<amount>", low + "-" + high));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    case FIRE:
-                        if (clone.containsEnchantment(Enchantment.FIRE_ASPECT)) {
-                            int lvl = clone.getEnchantments().get(Enchantment.FIRE_ASPECT);
-                            int amount = 4 * lvl;
-                            itr.set(fireString.replace("<amount>", String.valueOf(amount)));
-                        } else {
-                            itr.remove();
-                        }
-                        break;
-                    default:
-                        break;
+            }
+        } else {
+            while (itr.hasNext()) {
+                String string = itr.next();
+                //Calculate damages based on the enchantments
+                switch (string) {
+                case DAMAGE:
+                    int baseLow = getBaseDamage(mat);
+                    int baseHigh = (int) (baseLow * 1.5D) + 2;
+                    if (enchantments.containsKey(Enchantment.DAMAGE_ALL)) {
+                        int lvl = enchantments.get(Enchantment.DAMAGE_ALL);
+                        int low = baseLow + lvl;
+                        int high = baseHigh + 3 * lvl;
+                        itr.set(damageString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.set(damageString.replace("<amount>", baseLow + "-" + baseHigh));
                     }
+                    break;
+                case HOLY:
+                    if (enchantments.containsKey(Enchantment.DAMAGE_UNDEAD)) {
+                        int lvl = enchantments.get(Enchantment.DAMAGE_UNDEAD);
+                        int low = lvl;
+                        int high = 4 * lvl;
+                        itr.set(holyString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.remove();
+                    }
+                    break;
+                case BUG:
+                    if (enchantments.containsKey(Enchantment.DAMAGE_ARTHROPODS)) {
+                        int lvl = enchantments.get(Enchantment.DAMAGE_ARTHROPODS);
+                        int low = lvl;
+                        int high = 4 * lvl;
+                        itr.set(bugString.replace("<amount>", low + "-" + high));
+                    } else {
+                        itr.remove();
+                    }
+                    break;
+                case FIRE:
+                    if (enchantments.containsKey(Enchantment.FIRE_ASPECT)) {
+                        int lvl = enchantments.get(Enchantment.FIRE_ASPECT);
+                        int amount = 4 * lvl;
+                        itr.set(fireString.replace("<amount>", String.valueOf(amount)));
+                    } else {
+                        itr.remove();
+                    }
+                    break;
+                default:
+                    break;
                 }
             }
+        }
+    }
 
-            //Apply the new lore to the item
-            meta.setLore(lore);
-            clone.setItemMeta(meta);
+    /**
+     * Discards all rendered lore (the damage strings may have changed)
+     */
+    public static void clearRenderedLore() {
+        synchronized (renderedLores) {
+            renderedLores.clear();
+            renderedLoreHits = 0;
+            renderedLoreMisses = 0;
         }
+    }
 
-        return clone;
+    /**
+     * Returns the number of times that rendered lore was found in the cache
+     *
+     * @return The number of cache hits
+     */
+    public static long getRenderedLoreHits() {
+        synchronized (renderedLores) {
+            return renderedLoreHits;
+        }
+    }
+
+    /**
+     * Returns the number of times that lore had to be rendered
+     *
+     * @return The number of cache misses
+     */
+    public static long getRenderedLoreMisses() {
+        synchronized (renderedLores) {
+            return renderedLoreMisses;
+        }
     }
 
     /**
@@ -806,25 +937,14 @@ public class Item extends Loot {
      * @param nameBuilder The StringBuilder that will be changed to the new name
      */
     private void getTieredName(ItemStack item, StringBuilder nameBuilder) {
-        int tier = tiersConfig.getInt(BASE_VALUES + DIVIDER + item.getType().name());
-
-        Map<Enchantment, Integer> enchantments = item.getEnchantments();
-        for (Enchantment e : enchantments.keySet()) {
-            tier += tiersConfig.getInt(ENCHANTMENT_VALUES + DIVIDER + e.getName() + DIVIDER + enchantments.get(e));
-        }
+        TierTable table = tierTable;
+        int tier = table.getTier(item);
 
         //Add the suffix and prefix for the given tier
-        for (String string : tiersConfig.getConfigurationSection(TIERS).getKeys(false)) {
-            if (tier > Integer.parseInt(string)) {
-                //Hack to fix encoding issues
-                String prefix = tiersConfig.getString(TIERS + DIVIDER + string + ".Prefix");
-                if (prefix.startsWith("Â")) {
-                    prefix = prefix.substring(1);
-                }
-                nameBuilder.insert(0, prefix);
-                nameBuilder.append(tiersConfig.getString(TIERS + DIVIDER + string + ".Suffix"));
-                break;
-            }
+        int index = table.find(tier);
+        if (index != -1) {
+            nameBuilder.insert(0, table.getPrefix(index));
+            nameBuilder.append(table.getSuffix(index));
         }
 
         if (tier > tierNotify) {
@@ -838,7 +958,7 @@ public class Item extends Loot {
      * @param type The given Material
      * @return The base damage of the Material
      */
-    private int getBaseDamage(Material type) {
+    private static int getBaseDamage(Material type) {
         switch (type) {
         case WOOD_SPADE: return 1;
         case WOOD_PICKAXE: return 2;
@@ -870,7 +990,7 @@ public class Item extends Loot {
      * @param type The given Material
      * @return The base armor of the Material
      */
-    private int getBaseArmor(Material type) {
+    private static int getBaseArmor(Material type) {
         switch (type) {
         case LEATHER_BOOTS: return 1;
         case LEATHER_LEGGINGS: return 2;
@@ -13,6 +13,7 @@ import org.bukkit.inventory.ItemStack;
  */
 public abstract class Loot implements Comparable, ConfigurationSerializable {
     static Loot last; //The last successfully loaded Loot (used for debugging)
+    private static volatile int tableVersion; //Incremented each time any loot table is edited
     double probability = 100;
 
     /**
@@ -81,6 +82,24 @@ public abstract class Loot implements Comparable, ConfigurationSerializable {
      */
     public void setProbability(double probability) {
         this.probability = probability;
+        tableModified();
+    }
+
+    /**
+     * Signals that a loot table has been edited.
+     * Any precompiled samplers will be rebuilt before they are next rolled
+     */
+    public static void tableModified() {
+        tableVersion++;
+    }
+
+    /**
+     * Returns the current version of the loot tables
+     *
+     * @return A number which changes each time a loot table is edited
+     */
+    public static int getTableVersion() {
+        return tableVersion;
     }
 
     /**
@@ -27,6 +27,7 @@ public class LootCollection extends Loot {
     public int lowerNumberOfLoots;
     public int upperNumberOfLoots;
     private LinkedList<Loot> lootList;
+    private volatile LootSampler sampler; //Compiled from lootList and rebuilt after edits
 
     /**
      * Adds A LootCollection as Loot
@@ -132,42 +133,42 @@ public class LootCollection extends Loot {
             int numberOfLoots = lowerNumberOfLoots == upperNumberOfLoots
                                 ? lowerNumberOfLoots
                                 : PhatLootsUtil.rollForInt(lowerNumberOfLoots, upperNumberOfLoots);
+            LootSampler sampler = getSampler();
             //Make sure there are items that will be looted before entering the loop
-            if (!lootList.isEmpty()) {
-                //Sort the loot from lowest probability to highest
-                Collections.sort(lootList);
-                int numberLooted = 0;
-                LinkedList<Loot> removed = new LinkedList<>();
-                while (numberLooted < numberOfLoots) {
-                    //Calculate the total probability to determine the maximum amount that can be rolled
-                    double total = 0;
-                    for (Loot loot : lootList) {
-                        total += loot.probability;
-                    }
-                    //Roll a number between 0 and total and then subtract the looting bonus
-                    //We subtract because a lower roll is better in this case
-                    double roll = PhatLootsUtil.rollForDouble(total) - lootingBonus;
-                    for (Loot loot : lootList) {
-                        //Subtract the probability of each Loot from the roll until we drop below 0
-                        roll -= loot.getProbability();
-                        if (roll <= 0) {
-                            //Give this loot
-                            loot.getLoot(lootBundle, lootingBonus);
-                            if (!allowDuplicates) {
-                                removed.add(loot);
-                                lootList.remove(loot);
-                            }
-                            break;
+            if (sampler.size() > 0) {
+                if (allowDuplicates) {
+                    for (int numberLooted = 0; numberLooted < numberOfLoots; numberLooted++) {
+                        int index = sampler.pick(lootingBonus);
+                        if (index != -1) {
+                            sampler.loots[index].getLoot(lootBundle, lootingBonus);
                         }
                     }
-                    numberLooted++;
+                } else {
+                    //Each Loot may only be given once per roll
+                    for (int index : sampler.pickDistinct(numberOfLoots, lootingBonus)) {
+                        sampler.loots[index].getLoot(lootBundle, lootingBonus);
+                    }
                 }
-                //Readd all removed Loot
-                lootList.addAll(removed);
             }
         }
     }
 
+    /**
+     * Returns the precompiled sampler for this collection.
+     * The sampler is rebuilt if any loot table has been edited since it was compiled
+     *
+     * @return The LootSampler of the current Loot
+     */
+    private LootSampler getSampler() {
+        LootSampler current = sampler;
+        int version = Loot.getTableVersion();
+        if (current == null || current.version != version) {
+            current = new LootSampler(lootList, version);
+            sampler = current;
+        }
+        return current;
+    }
+
     /**
      * Returns the list of loot in the collection
      *
@@ -274,6 +275,7 @@ public class LootCollection extends Loot {
             }
         }
         lootList.add(target);
+        tableModified();
         return true;
     }
 
@@ -288,6 +290,7 @@ public class LootCollection extends Loot {
         while (itr.hasNext()) {
             if (itr.next().equals(target)) {
                 itr.remove();
+                tableModified();
                 return true;
             }
         }
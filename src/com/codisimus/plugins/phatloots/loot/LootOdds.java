@@ -0,0 +1,358 @@
+package com.codisimus.plugins.phatloots.loot;
+
+import java.util.*;
+
+/**
+ * LootOdds are the exact chances of each Loot of a LootPlan being looted in a single roll.
+ * Collections are never given as loot themselves so only the Loot within them are included.
+ * Each node's number of looted copies per roll is modeled by its probability generating function,
+ * so the odds of nested collections are found by composing the functions along the path to the root.
+ * Picks without duplicates are solved with dynamic programming over the sets of Loot already picked
+ *
+ * @author Codisimus
+ */
+public final class LootOdds {
+    private static final int MAX_STATES = 250000; //Picks without duplicates are approximated beyond this many sets
+
+    private final double lootingBonus;
+    private final Loot[] loot;
+    private final double[] probability; //Chance of the Loot being given at least once
+    private final double[] expectedCount; //Average number of times that the Loot is given
+    private final IdentityHashMap<Loot, Integer> index = new IdentityHashMap<>();
+    private double expectedMoney;
+    private double expectedExp;
+    private boolean exact = true;
+
+    /**
+     * Calculates the odds of each Loot of the given plan
+     *
+     * @param plan The compiled LootPlan of a PhatLoot
+     * @param lootingBonus The increased chance of getting rarer loots
+     */
+    LootOdds(LootPlan plan, double lootingBonus) {
+        this.lootingBonus = lootingBonus;
+        int size = plan.kind.length;
+
+        //Find the parent of each node
+        int[] parent = new int[size];
+        Arrays.fill(parent, -1);
+        for (int node = 0; node < size; node++) {
+            if (plan.kind[node] == LootPlan.COLLECTION) {
+                for (int child = plan.childStart[node]; child < plan.childEnd[node]; child++) {
+                    parent[child] = node;
+                }
+            }
+        }
+
+        //Find the chance of each node being given each time that its parent is given
+        double[] chance = new double[size];
+        boolean[] perDraw = new boolean[size]; //True if the chance applies to each draw of the parent collection
+        for (int node = 0; node < plan.rootCount; node++) {
+            chance[node] = rollChance(plan.probability[node]);
+        }
+        for (int node = 0; node < size; node++) {
+            if (plan.kind[node] != LootPlan.COLLECTION) {
+                continue;
+            }
+            int start = plan.childStart[node];
+            LootSampler sampler = plan.sampler[node];
+            if (sampler == null) {
+                //Each Loot is rolled for twice (see LootCollection.getLoot)
+                for (int child = start; child < plan.childEnd[node]; child++) {
+                    double c = rollChance(plan.probability[child]);
+                    chance[child] = c * c;
+                }
+            } else if (LootCollection.allowDuplicates) {
+                double[] pickChance = pickChances(sampler, 0L);
+                for (int i = 0; i < pickChance.length; i++) {
+                    chance[start + i] = pickChance[i];
+                    perDraw[start + i] = true;
+                }
+            } else {
+                double[] inclusion = inclusionChances(sampler, plan.lowerBound[node], plan.upperBound[node]);
+                if (inclusion == null) {
+                    //Too many Loot to solve exactly so treat the picks as if duplicates were allowed
+                    exact = false;
+                    double[] pickChance = pickChances(sampler, 0L);
+                    inclusion = new double[pickChance.length];
+                    for (int i = 0; i < pickChance.length; i++) {
+                        inclusion[i] = 1 - drawMixture(0, pickChance[i], plan.lowerBound[node], plan.upperBound[node]);
+                    }
+                }
+                System.arraycopy(inclusion, 0, chance, start, inclusion.length);
+            }
+        }
+
+        //Compose the chances of each Loot with those of the collections above it
+        ArrayList<Integer> leaves = new ArrayList<>();
+        for (int node = 0; node < size; node++) {
+            if (plan.kind[node] != LootPlan.COLLECTION) {
+                leaves.add(node);
+            }
+        }
+        loot = new Loot[leaves.size()];
+        probability = new double[leaves.size()];
+        expectedCount = new double[leaves.size()];
+        for (int i = 0; i < loot.length; i++) {
+            int leaf = leaves.get(i);
+            double zero = 0; //Chance of the Loot not being given each time that the current node is given
+            double mean = 1;
+            for (int node = leaf; node != -1; node = parent[node]) {
+                if (perDraw[node]) {
+                    int lower = plan.lowerBound[parent[node]];
+                    int upper = plan.upperBound[parent[node]];
+                    zero = drawMixture(zero, chance[node], lower, upper);
+                    mean *= chance[node] * meanDraws(lower, upper);
+                } else {
+                    zero = 1 - chance[node] + chance[node] * zero;
+                    mean *= chance[node];
+                }
+            }
+            loot[i] = plan.source[leaf];
+            probability[i] = 1 - zero;
+            expectedCount[i] = mean;
+            if (!index.containsKey(loot[i])) {
+                index.put(loot[i], i);
+            }
+            if (plan.kind[leaf] == LootPlan.MONEY) {
+                expectedMoney += mean * (plan.lowerBound[leaf] + plan.upperBound[leaf]) / 2;
+            } else if (plan.kind[leaf] == LootPlan.EXPERIENCE) {
+                expectedExp += mean * (plan.lowerBound[leaf] + plan.upperBound[leaf]) / 2;
+            }
+        }
+    }
+
+    /**
+     * Returns the chance of Loot with the given probability passing a roll (see Loot.rollForLoot)
+     *
+     * @param lootProbability The probability of the Loot
+     * @return A chance between 0 and 1
+     */
+    private double rollChance(double lootProbability) {
+        return Math.min(1, Math.max(0, (lootProbability + lootingBonus) / 100));
+    }
+
+    /**
+     * Returns the chance of each Loot of the sampler being the next pick (see LootSampler.pick)
+     *
+     * @param sampler The LootSampler of a collection
+     * @param taken The set of Loot which may no longer be picked
+     * @return The chance of each Loot being picked (the remainder is the chance of no pick)
+     */
+    private double[] pickChances(LootSampler sampler, long taken) {
+        int size = sampler.size();
+        double[] pickChance = new double[size];
+        double remaining = sampler.total;
+        for (int i = 0; i < size; i++) {
+            if ((taken & (1L << i)) != 0) {
+                remaining -= sampler.loots[i].probability;
+            }
+        }
+        if (remaining <= 0) {
+            //Every roll lands on the first Loot which has not been picked
+            for (int i = 0; i < size; i++) {
+                if ((taken & (1L << i)) == 0) {
+                    pickChance[i] = 1;
+                    break;
+                }
+            }
+            return pickChance;
+        }
+
+        //The roll is uniform between -lootingBonus and remaining - lootingBonus
+        double rollLow = -lootingBonus;
+        double rollHigh = remaining - lootingBonus;
+        double low = Double.NEGATIVE_INFINITY;
+        double cumulative = 0;
+        for (int i = 0; i < size; i++) {
+            if ((taken & (1L << i)) != 0) {
+                continue;
+            }
+            cumulative += sampler.loots[i].probability;
+            pickChance[i] = Math.max(0, Math.min(cumulative, rollHigh) - Math.max(low, rollLow)) / remaining;
+            low = cumulative;
+        }
+        return pickChance;
+    }
+
+    /**
+     * Returns the chance of each Loot of the sampler being among the picks without duplicates
+     *
+     * @param sampler The LootSampler of a collection
+     * @param lower The lower bound of the number of picks
+     * @param upper The upper bound of the number of picks
+     * @return The chance of each Loot being picked or null if there are too many to solve exactly
+     */
+    private double[] inclusionChances(LootSampler sampler, int lower, int upper) {
+        int size = sampler.size();
+        if (size > 64) {
+            return null;
+        }
+        int maxDraws = Math.min(Math.max(lower, upper), size);
+
+        //inclusion[k][i] is the chance of Loot i having been picked within k draws
+        double[][] inclusion = new double[maxDraws + 1][size];
+        HashMap<Long, Double> states = new HashMap<>();
+        states.put(0L, 1D);
+        for (int draw = 1; draw <= maxDraws; draw++) {
+            HashMap<Long, Double> next = new HashMap<>();
+            for (Map.Entry<Long, Double> entry : states.entrySet()) {
+                long taken = entry.getKey();
+                double stateChance = entry.getValue();
+                double[] pickChance = pickChances(sampler, taken);
+                double missed = 1;
+                for (int i = 0; i < size; i++) {
+                    if (pickChance[i] > 0) {
+                        addChance(next, taken | (1L << i), stateChance * pickChance[i]);
+                        missed -= pickChance[i];
+                    }
+                }
+                if (missed > 0) {
+                    addChance(next, taken, stateChance * missed);
+                }
+                //Give up before the next sets grow far beyond the limit
+                if (next.size() > MAX_STATES) {
+                    return null;
+                }
+            }
+            states = next;
+            for (Map.Entry<Long, Double> entry : states.entrySet()) {
+                long taken = entry.getKey();
+                for (int i = 0; i < size; i++) {
+                    if ((taken & (1L << i)) != 0) {
+                        inclusion[draw][i] += entry.getValue();
+                    }
+                }
+            }
+        }
+
+        //Average over the possible number of draws
+        double[] result = new double[size];
+        int low = lower == upper ? lower : Math.min(lower, upper);
+        int high = lower == upper ? lower : Math.max(lower, upper);
+        for (int draws = low; draws <= high; draws++) {
+            double[] picked = inclusion[Math.max(0, Math.min(draws, maxDraws))];
+            for (int i = 0; i < size; i++) {
+                result[i] += picked[i] / (high - low + 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the given chance to a state of the dynamic program
+     *
+     * @param states The chance of each set of picked Loot
+     * @param taken The set of picked Loot
+     * @param amount The chance to add
+     */
+    private static void addChance(HashMap<Long, Double> states, long taken, double amount) {
+        Double current = states.get(taken);
+        states.put(taken, current == null ? amount : current + amount);
+    }
+
+    /**
+     * Evaluates the generating function of a Loot picked from a collection with duplicates allowed.
+     * The number of draws is uniform between the lower and upper bound
+     *
+     * @param zero The chance of the Loot giving nothing each time that it is picked
+     * @param pickChance The chance of the Loot being picked by a single draw
+     * @param lower The lower bound of the number of draws
+     * @param upper The upper bound of the number of draws
+     * @return The chance of nothing being given by the collection
+     */
+    private static double drawMixture(double zero, double pickChance, int lower, int upper) {
+        int low = Math.min(lower, upper);
+        int high = Math.max(lower, upper);
+        double perDraw = 1 - pickChance + pickChance * zero;
+        double sum = 0;
+        for (int draws = low; draws <= high; draws++) {
+            sum += Math.pow(perDraw, Math.max(draws, 0));
+        }
+        return sum / (high - low + 1);
+    }
+
+    /**
+     * Returns the average number of draws of a collection
+     *
+     * @param lower The lower bound of the number of draws
+     * @param upper The upper bound of the number of draws
+     * @return The mean number of draws
+     */
+    private static double meanDraws(int lower, int upper) {
+        int low = Math.min(lower, upper);
+        int high = Math.max(lower, upper);
+        double sum = 0;
+        for (int draws = low; draws <= high; draws++) {
+            sum += Math.max(draws, 0);
+        }
+        return sum / (high - low + 1);
+    }
+
+    /**
+     * Returns the looting bonus which these odds were calculated for
+     *
+     * @return The looting bonus
+     */
+    public double getLootingBonus() {
+        return lootingBonus;
+    }
+
+    /**
+     * Returns false if some picks without duplicates had to be approximated
+     *
+     * @return true if every chance is exact
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Returns each Loot which may be given (collections are not included)
+     *
+     * @return The list of Loot
+     */
+    public List<Loot> getLoot() {
+        return Collections.unmodifiableList(Arrays.asList(loot));
+    }
+
+    /**
+     * Returns the chance of the given Loot being given at least once in a single roll
+     *
+     * @param target The given Loot
+     * @return A chance between 0 and 1 (0 if the Loot is not part of the PhatLoot)
+     */
+    public double getProbability(Loot target) {
+        Integer i = index.get(target);
+        return i == null ? 0 : probability[i];
+    }
+
+    /**
+     * Returns the average number of times that the given Loot is given in a single roll
+     *
+     * @param target The given Loot
+     * @return The expected count (0 if the Loot is not part of the PhatLoot)
+     */
+    public double getExpectedCount(Loot target) {
+        Integer i = index.get(target);
+        return i == null ? 0 : expectedCount[i];
+    }
+
+    /**
+     * Returns the average amount of money given in a single roll
+     *
+     * @return The expected money
+     */
+    public double getExpectedMoney() {
+        return expectedMoney;
+    }
+
+    /**
+     * Returns the average amount of experience given in a single roll
+     *
+     * @return The expected experience
+     */
+    public double getExpectedExp() {
+        return expectedExp;
+    }
+}
@@ -0,0 +1,286 @@
+package com.codisimus.plugins.phatloots.loot;
+
+import com.codisimus.plugins.phatloots.PhatLootsUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A LootPlan is a PhatLoot's loot table compiled into flat arrays.
+ * Each Loot becomes a node and the Loot of a LootCollection are stored as a range of child nodes.
+ * Rolling a plan scans these arrays rather than walking the Loot objects.
+ * Loot which is not understood by the plan (Gems, MythicDrops items, Loot of other plugins...)
+ * is kept as a custom node and rolled for as it normally would be.
+ * A plan is never modified once it is compiled so it may be swapped out at any time
+ *
+ * @author Codisimus
+ */
+public final class LootPlan {
+    /* NODE KINDS */
+    private static final byte ITEM = 0;
+    static final byte COLLECTION = 1;
+    static final byte MONEY = 2;
+    static final byte EXPERIENCE = 3;
+    private static final byte COMMAND = 4;
+    private static final byte MESSAGE = 5;
+    private static final byte CUSTOM = 6;
+    private static final int MAX_CACHED_ODDS = 8; //The number of looting bonuses whose odds are kept
+
+    private final int version; //The loot table version this plan was compiled from
+    final int rootCount; //The first nodes are the Loot of the PhatLoot itself
+    final byte[] kind;
+    final double[] probability;
+    final int[] lowerBound; //Amount range, collection size range or the bonus amount of an Item
+    final int[] upperBound; //Amount range, collection size range or the bonus durability of an Item
+    final int[] childStart;
+    final int[] childEnd;
+    final LootSampler[] sampler; //Only present for collections that are rolled collectively
+    private final Object[] payload; //Item template, CommandLoot, message or the Loot of a custom node
+    final Loot[] source; //The Loot which each node was compiled from
+    private final Map<Double, LootOdds> odds = Collections.synchronizedMap(new LinkedHashMap<Double, LootOdds>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Double, LootOdds> eldest) {
+            return size() > MAX_CACHED_ODDS;
+        }
+    }); //Calculated odds by looting bonus (least recently used first)
+
+    /**
+     * Compiles the given list of Loot into a LootPlan
+     *
+     * @param lootList The Loot of a PhatLoot
+     * @param version The current loot table version
+     */
+    public LootPlan(List<Loot> lootList, int version) {
+        this.version = version;
+
+        //Flatten the loot tree breadth first so that the children of each collection are adjacent
+        ArrayList<Loot> nodes = new ArrayList<>(lootList);
+        rootCount = nodes.size();
+        ArrayList<int[]> ranges = new ArrayList<>();
+        ArrayList<LootSampler> samplers = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Loot loot = nodes.get(i);
+            if (loot.getClass() == LootCollection.class) {
+                LootCollection coll = (LootCollection) loot;
+                int start = nodes.size();
+                if (coll.isRollForEach()) {
+                    //Children are rolled for in the order that they are listed
+                    nodes.addAll(coll.getLootList());
+                    samplers.add(null);
+                } else {
+                    //Children are laid out in the order of the sampler so that its indexes may be reused
+                    LootSampler collSampler = new LootSampler(coll.getLootList(), version);
+                    for (Loot child : collSampler.loots) {
+                        nodes.add(child);
+                    }
+                    samplers.add(collSampler);
+                }
+                ranges.add(new int[] { start, nodes.size() });
+            } else {
+                ranges.add(null);
+                samplers.add(null);
+            }
+        }
+
+        int size = nodes.size();
+        kind = new byte[size];
+        probability = new double[size];
+        lowerBound = new int[size];
+        upperBound = new int[size];
+        childStart = new int[size];
+        childEnd = new int[size];
+        sampler = samplers.toArray(new LootSampler[size]);
+        payload = new Object[size];
+        source = nodes.toArray(new Loot[size]);
+        for (int i = 0; i < size; i++) {
+            Loot loot = nodes.get(i);
+            probability[i] = loot.getProbability();
+            if (loot.getClass() == LootCollection.class) {
+                LootCollection coll = (LootCollection) loot;
+                kind[i] = COLLECTION;
+                lowerBound[i] = coll.lowerNumberOfLoots;
+                upperBound[i] = coll.upperNumberOfLoots;
+                childStart[i] = ranges.get(i)[0];
+                childEnd[i] = ranges.get(i)[1];
+            } else if (loot.getClass() == Item.class && isTemplate((Item) loot)) {
+                Item item = (Item) loot;
+                kind[i] = ITEM;
+                lowerBound[i] = item.amountBonus;
+                upperBound[i] = item.durabilityBonus;
+                payload[i] = item.item.clone();
+            } else if (loot.getClass() == Money.class) {
+                Money money = (Money) loot;
+                kind[i] = MONEY;
+                lowerBound[i] = money.lowerAmount;
+                upperBound[i] = money.upperAmount;
+            } else if (loot.getClass() == Experience.class) {
+                Experience exp = (Experience) loot;
+                kind[i] = EXPERIENCE;
+                lowerBound[i] = exp.lowerAmount;
+                upperBound[i] = exp.upperAmount;
+            } else if (loot.getClass() == CommandLoot.class) {
+                kind[i] = COMMAND;
+                payload[i] = loot;
+            } else if (loot.getClass() == Message.class) {
+                kind[i] = MESSAGE;
+                payload[i] = ((Message) loot).msg;
+            } else {
+                kind[i] = CUSTOM;
+                payload[i] = loot;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given Item is always looted as a copy of its ItemStack
+     * (only the amount and durability are rolled for)
+     *
+     * @param item The Item to check
+     * @return true if the ItemStack may be used as a template
+     */
+    private static boolean isTemplate(Item item) {
+        if (item.autoEnchant || item.generateName || item.randomLore || item.tieredName) {
+            return false;
+        }
+        //Damage tags within the lore are filled in when the Item is looted
+        return !Item.damageTags || !item.item.hasItemMeta() || !item.item.getItemMeta().hasLore();
+    }
+
+    /**
+     * Returns the loot table version that this plan was compiled from
+     *
+     * @return The version of the loot tables
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the exact odds of each Loot of the plan.
+     * The odds of the most recently used looting bonuses are kept so that they are not calculated again
+     *
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @return The LootOdds of this plan
+     */
+    public LootOdds getOdds(double lootingBonus) {
+        LootOdds result = odds.get(lootingBonus);
+        if (result == null) {
+            result = new LootOdds(this, lootingBonus);
+            odds.put(lootingBonus, result);
+        }
+        return result;
+    }
+
+    /**
+     * Rolls for each top level Loot of the plan and adds the results to the given LootBundle
+     *
+     * @param lootBundle The given LootBundle
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @return The given LootBundle
+     */
+    public LootBundle roll(LootBundle lootBundle, double lootingBonus) {
+        for (int node = 0; node < rootCount; node++) {
+            if (rollForNode(node, lootingBonus)) {
+                giveNode(node, lootBundle, lootingBonus);
+            }
+        }
+        return lootBundle;
+    }
+
+    /**
+     * Rolls for the given node and returns true if it was a successful roll
+     *
+     * @param node The index of the node
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @return true if the node should be looted
+     */
+    private boolean rollForNode(int node, double lootingBonus) {
+        return kind[node] == CUSTOM
+               ? ((Loot) payload[node]).rollForLoot(lootingBonus)
+               : Loot.roll() < (probability[node] + lootingBonus);
+    }
+
+    /**
+     * Adds the loot of the given node to the LootBundle
+     *
+     * @param node The index of the node
+     * @param lootBundle The loot that has been rolled for
+     * @param lootingBonus The increased chance of getting rarer loots
+     */
+    private void giveNode(int node, LootBundle lootBundle, double lootingBonus) {
+        switch (kind[node]) {
+        case ITEM:
+            ItemStack item = ((ItemStack) payload[node]).clone();
+            if (lowerBound[node] > 0) {
+                //Roll the stack size of the item
+                item.setAmount(item.getAmount() + PhatLootsUtil.rollForInt(lowerBound[node]));
+            }
+            if (upperBound[node] > 0) {
+                //Roll for the durability of the item
+                item.setDurability((short) (item.getDurability() + PhatLootsUtil.rollForInt(upperBound[node])));
+            }
+            lootBundle.addItem(item);
+            break;
+        case COLLECTION:
+            giveCollection(node, lootBundle, lootingBonus);
+            break;
+        case MONEY:
+            lootBundle.addMoney(PhatLootsUtil.rollForInt(lowerBound[node], upperBound[node]));
+            break;
+        case EXPERIENCE:
+            lootBundle.addExp(PhatLootsUtil.rollForInt(lowerBound[node], upperBound[node]));
+            break;
+        case COMMAND:
+            lootBundle.addCommand((CommandLoot) payload[node]);
+            break;
+        case MESSAGE:
+            lootBundle.addMessage((String) payload[node]);
+            break;
+        default:
+            ((Loot) payload[node]).getLoot(lootBundle, lootingBonus);
+            break;
+        }
+    }
+
+    /**
+     * Rolls for the children of the given collection node (see LootCollection.getLoot)
+     *
+     * @param node The index of the collection node
+     * @param lootBundle The loot that has been rolled for
+     * @param lootingBonus The increased chance of getting rarer loots
+     */
+    private void giveCollection(int node, LootBundle lootBundle, double lootingBonus) {
+        int start = childStart[node];
+        LootSampler collSampler = sampler[node];
+        if (collSampler == null) { //Roll for each Loot individually
+            for (int child = start; child < childEnd[node]; child++) {
+                if (rollForNode(child, lootingBonus)) {
+                    if (rollForNode(child, lootingBonus)) {
+                        giveNode(child, lootBundle, lootingBonus);
+                    }
+                }
+            }
+        } else if (collSampler.size() > 0) { //Roll for all Loot collectively
+            //Roll for the amount of loots
+            int numberOfLoots = lowerBound[node] == upperBound[node]
+                                ? lowerBound[node]
+                                : PhatLootsUtil.rollForInt(lowerBound[node], upperBound[node]);
+            if (LootCollection.allowDuplicates) {
+                for (int numberLooted = 0; numberLooted < numberOfLoots; numberLooted++) {
+                    int index = collSampler.pick(lootingBonus);
+                    if (index != -1) {
+                        giveNode(start + index, lootBundle, lootingBonus);
+                    }
+                }
+            } else {
+                //Each Loot may only be given once per roll
+                for (int index : collSampler.pickDistinct(numberOfLoots, lootingBonus)) {
+                    giveNode(start + index, lootBundle, lootingBonus);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.codisimus.plugins.phatloots.loot;
+
+import com.codisimus.plugins.phatloots.PhatLootsUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A LootSampler is a precompiled weighted picker for the Loot of a LootCollection.
+ * Loot is sorted by probability (lowest first) and weighted by its probability.
+ * Picks without a looting bonus use a Vose alias table and take constant time.
+ * Picks with a looting bonus binary search the cumulative probabilities
+ * so that the bonus still favors the rarer loots.
+ * Picks without replacement descend a Fenwick tree of the probabilities.
+ * A sampler is never modified after it is built so it may be rolled from any thread.
+ *
+ * @author Codisimus
+ */
+final class LootSampler {
+    final int version; //The loot table version this sampler was built from
+    final Loot[] loots; //Sorted from lowest probability to highest
+    final double[] cumulative; //Running total of probabilities in sorted order
+    final double total;
+    private final double[] aliasProbability;
+    private final int[] alias;
+    private final double[] tree; //Fenwick tree of probabilities (1-indexed)
+    private final int highestStep; //Largest power of 2 that is not above the size
+
+    /**
+     * Compiles a sampler for the given Loot
+     *
+     * @param lootList The Loot to pick from
+     * @param version The current loot table version
+     */
+    LootSampler(Collection<Loot> lootList, int version) {
+        this.version = version;
+
+        //Sort a copy of the loot so that the collection itself is left untouched
+        ArrayList<Loot> sorted = new ArrayList<>(lootList);
+        Collections.sort(sorted);
+        int size = sorted.size();
+        loots = sorted.toArray(new Loot[size]);
+
+        //Calculate the running total of the probabilities
+        cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += loots[i].probability;
+            cumulative[i] = sum;
+        }
+        total = sum;
+
+        //Build the Fenwick tree in linear time
+        tree = new double[size + 1];
+        for (int i = 1; i <= size; i++) {
+            tree[i] += loots[i - 1].probability;
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] += tree[i];
+            }
+        }
+        highestStep = size == 0 ? 0 : Integer.highestOneBit(size);
+
+        //Build the alias table
+        aliasProbability = new double[size];
+        alias = new int[size];
+        if (size == 0 || total <= 0) {
+            return;
+        }
+        double[] scaled = new double[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < size; i++) {
+            scaled[i] = loots[i].probability * size / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            aliasProbability[less] = scaled[less];
+            alias[less] = more;
+            //Give the unused portion of the column to the larger entry
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        //Any leftovers are full columns (rounding errors may leave some in small)
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            aliasProbability[index] = 1;
+            alias[index] = index;
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            aliasProbability[index] = 1;
+            alias[index] = index;
+        }
+    }
+
+    /**
+     * Returns the number of Loot that may be picked
+     *
+     * @return The amount of Loot in the sampler
+     */
+    int size() {
+        return loots.length;
+    }
+
+    /**
+     * Picks the index of a Loot in proportion to its probability
+     *
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @return The index of the picked Loot or -1 if none was picked
+     */
+    int pick(double lootingBonus) {
+        int size = loots.length;
+        if (size == 0) {
+            return -1;
+        }
+        if (total <= 0) {
+            //Every Loot has a probability of 0 so the first is given
+            return 0;
+        }
+        if (lootingBonus == 0) {
+            //One roll chooses both the column and the position within it
+            double roll = PhatLootsUtil.rollForDouble(size);
+            int column = (int) roll;
+            if (column >= size) {
+                column = size - 1;
+            }
+            return roll - column < aliasProbability[column] ? column : alias[column];
+        }
+        //Roll a number between 0 and total and then subtract the looting bonus
+        //We subtract because a lower roll is better in this case
+        return search(PhatLootsUtil.rollForDouble(total) - lootingBonus);
+    }
+
+    /**
+     * Returns the first index whose running total reaches the given roll
+     *
+     * @param roll The rolled number
+     * @return The index of the Loot or -1 if the roll exceeds the total
+     */
+    int search(double roll) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        if (high < 0 || cumulative[high] < roll) {
+            return -1;
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < roll) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Picks the indexes of distinct Loot in proportion to their probabilities.
+     * Each picked Loot is excluded from the following picks.
+     * Excluded Loot is tracked per call so the sampler itself is left untouched
+     *
+     * @param count The number of Loot to pick
+     * @param lootingBonus The increased chance of getting rarer loots
+     * @return The indexes of the picked Loot in the order that they were picked
+     */
+    int[] pickDistinct(int count, double lootingBonus) {
+        int size = loots.length;
+        if (count > size) {
+            count = size;
+        }
+        //Scratch state of this roll
+        int[] picked = new int[Math.max(count, 0)];
+        int pickCount = 0;
+        double remaining = total;
+        //Each pick updates at most one node per level of the tree
+        int levels = Integer.numberOfTrailingZeros(highestStep) + 1;
+        Removals removed = new Removals(picked.length * levels);
+        Removals pickedSet = new Removals(picked.length);
+
+        for (int numberLooted = 0; numberLooted < count; numberLooted++) {
+            //Roll a number between 0 and total and then subtract the looting bonus
+            //We subtract because a lower roll is better in this case
+            double roll = PhatLootsUtil.rollForDouble(remaining) - lootingBonus;
+
+            //Descend the tree to find the first Loot whose running total reaches the roll
+            int position = 0;
+            for (int step = highestStep; step > 0; step >>= 1) {
+                int next = position + step;
+                if (next <= size) {
+                    //Ignore the probability of Loot which has already been picked
+                    double sum = tree[next] - removed.get(next);
+                    if (sum < roll) {
+                        position = next;
+                        roll -= sum;
+                    }
+                }
+            }
+
+            //Rounding errors or a large looting bonus may land on Loot which was already picked
+            while (position < size && pickedSet.get(position + 1) != 0) {
+                position++;
+            }
+            if (position >= size) {
+                continue;
+            }
+
+            picked[pickCount++] = position;
+            pickedSet.add(position + 1, 1);
+            double probability = loots[position].probability;
+            remaining -= probability;
+            //Remove the Loot from this roll's view of the tree
+            for (int node = position + 1; node <= size; node += node & -node) {
+                removed.add(node, probability);
+            }
+        }
+
+        return pickCount == picked.length ? picked : Arrays.copyOf(picked, pickCount);
+    }
+
+    /**
+     * The probability which has been removed from nodes of the tree during a single roll.
+     * Only the touched nodes are stored so a roll does not copy the whole tree
+     */
+    private static final class Removals {
+        private final int[] keys; //Tree node (1-indexed) or 0 if the slot is empty
+        private final double[] values;
+        private final int mask;
+
+        /**
+         * Creates an empty table for the given number of nodes
+         *
+         * @param expected The most nodes which may be stored
+         */
+        Removals(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 1) * 4 + 1);
+            keys = new int[capacity];
+            values = new double[capacity];
+            mask = capacity - 1;
+        }
+
+        /**
+         * Returns the probability which was removed from the given node
+         *
+         * @param node The tree node
+         * @return The removed probability or 0 if none was removed
+         */
+        double get(int node) {
+            for (int slot = (node * 0x9E3779B9) >>> 1 & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == node) {
+                    return values[slot];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Adds to the probability which was removed from the given node
+         *
+         * @param node The tree node
+         * @param value The probability to add
+         */
+        void add(int node, double value) {
+            int slot = (node * 0x9E3779B9) >>> 1 & mask;
+            while (keys[slot] != 0 && keys[slot] != node) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = node;
+            values[slot] += value;
+        }
+    }
+}
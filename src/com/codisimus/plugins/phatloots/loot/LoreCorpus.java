@@ -0,0 +1,241 @@
+package com.codisimus.plugins.phatloots.loot;
+
+import com.codisimus.plugins.phatloots.PhatLoots;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * The LoreCorpus holds every Item Description in memory so that random lore never reads from the disk.
+ * Descriptions are indexed by the name of their folder (the Material followed by the Enchantments).
+ * A watcher thread reloads a folder whenever a file within it is changed
+ *
+ * @author Codisimus
+ */
+public class LoreCorpus {
+    public static final String FOLDER = "Item Descriptions";
+    private static final ConcurrentHashMap<String, Description[]> index = new ConcurrentHashMap<>();
+    private static File root;
+    private static WatchService watcher;
+    private static Thread watcherThread;
+
+    /**
+     * The name and lore of a single Item Description file
+     */
+    public static class Description {
+        private final String name;
+        private final List<String> lore;
+
+        private Description(String name, List<String> lore) {
+            this.name = name;
+            this.lore = Collections.unmodifiableList(lore);
+        }
+
+        /**
+         * Returns the first line of the description which is used as the name of the Item
+         *
+         * @return The name with color codes translated
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the remaining lines of the description
+         *
+         * @return The lore with color codes translated
+         */
+        public List<String> getLore() {
+            return lore;
+        }
+    }
+
+    /**
+     * Loads every Item Description and begins watching for changes
+     */
+    public static synchronized void load() {
+        stopWatching();
+        index.clear();
+        root = new File(PhatLoots.dataFolder, FOLDER);
+        if (!root.isDirectory()) {
+            return;
+        }
+
+        File[] folders = root.listFiles();
+        if (folders != null) {
+            for (File folder : folders) {
+                if (folder.isDirectory()) {
+                    loadFolder(folder);
+                }
+            }
+        }
+
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            register(root.toPath());
+            for (String folder : index.keySet()) {
+                register(new File(root, folder).toPath());
+            }
+        } catch (IOException ex) {
+            PhatLoots.logger.log(Level.WARNING, "Changes to " + FOLDER + " will not be detected until reload", ex);
+            return;
+        }
+
+        watcherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "PhatLoots Lore Watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Stops watching for changes to the Item Descriptions
+     */
+    public static synchronized void stopWatching() {
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+            watcherThread = null;
+        }
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException ex) {
+                //Do nothing
+            }
+            watcher = null;
+        }
+    }
+
+    /**
+     * Returns the Item Descriptions of the given folder
+     *
+     * @param folder The name of the folder (Material followed by Enchantments)
+     * @return The Descriptions (null entries could not be read) or null if there are none
+     */
+    public static Description[] getDescriptions(String folder) {
+        Description[] descriptions = index.get(folder);
+        return descriptions == null || descriptions.length == 0 ? null : descriptions;
+    }
+
+    /**
+     * Reads every file of the given folder into the index
+     *
+     * @param folder The folder of Item Descriptions
+     */
+    private static void loadFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files == null || !folder.isDirectory()) {
+            index.remove(folder.getName());
+            return;
+        }
+        ArrayList<Description> descriptions = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile()) {
+                descriptions.add(readDescription(file));
+            }
+        }
+        index.put(folder.getName(), descriptions.toArray(new Description[descriptions.size()]));
+    }
+
+    /**
+     * Reads a single Item Description file
+     *
+     * @param file The file to read
+     * @return The Description or null if the file is empty or cannot be read
+     */
+    private static Description readDescription(File file) {
+        try (FileReader fReader = new FileReader(file)) {
+            try (BufferedReader bReader = new BufferedReader(fReader)) {
+                String line = bReader.readLine();
+                if (line == null || line.isEmpty()) {
+                    return null;
+                }
+                if (line.charAt(0) == '&') {
+                    line = line.replace('&', '§');
+                }
+                String name = line;
+
+                List<String> lore = new ArrayList<>();
+                while ((line = bReader.readLine()) != null) {
+                    line = line.replace('&', '§');
+                    lore.add(line);
+                }
+                return new Description(name, lore);
+            }
+        } catch (Exception ex) {
+            PhatLoots.logger.severe("The Item Description " + file.getName() + " cannot be read");
+            return null;
+        }
+    }
+
+    /**
+     * Watches the given directory for changes
+     *
+     * @param dir The directory to watch
+     * @throws IOException if the directory cannot be watched
+     */
+    private static void register(Path dir) throws IOException {
+        dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Reloads each folder which has changed until the watcher is closed
+     */
+    private static void watch() {
+        WatchService service = watcher;
+        File dir = root;
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+
+            Path path = (Path) key.watchable();
+            boolean isRoot = path.equals(dir.toPath());
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    //Events were lost so reload whichever folders may have changed
+                    if (isRoot) {
+                        for (String folder : index.keySet()) {
+                            loadFolder(new File(dir, folder));
+                        }
+                    } else {
+                        loadFolder(path.toFile());
+                    }
+                    continue;
+                }
+                if (isRoot) {
+                    //A folder was added or removed
+                    File folder = path.resolve((Path) event.context()).toFile();
+                    if (folder.isDirectory()) {
+                        loadFolder(folder);
+                        try {
+                            register(folder.toPath());
+                        } catch (IOException | ClosedWatchServiceException ex) {
+                            //The folder will be loaded again on reload
+                        }
+                    } else {
+                        index.remove(folder.getName());
+                    }
+                } else {
+                    //A description within the folder was changed
+                    loadFolder(path.toFile());
+                }
+            }
+            if (!key.reset() && !isRoot) {
+                index.remove(path.toFile().getName());
+            }
+        }
+    }
+}
@@ -21,7 +21,7 @@ import org.bukkit.inventory.meta.ItemMeta;
  */
 @SerializableAs("Message")
 public class Message extends Loot {
-    private String msg;
+    String msg;
 
     /**
      * Constructs a new Message for the given String
@@ -24,8 +24,8 @@ import org.bukkit.inventory.meta.ItemMeta;
  */
 @SerializableAs("Money")
 public class Money extends Loot {
-    private int lowerAmount;
-    private int upperAmount;
+    int lowerAmount;
+    int upperAmount;
 
     /**
      * Adds Money as Loot
@@ -0,0 +1,169 @@
+package com.codisimus.plugins.phatloots.loot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A TierTable is tiers.yml compiled into arrays of scores and tier thresholds.
+ * The tier of an Item is the score of its Material plus the score of each of its Enchantments.
+ * The name of an Item is given the prefix and suffix of the highest threshold which its tier exceeds
+ *
+ * @author Codisimus
+ */
+final class TierTable {
+    private static final String BASE_VALUES = "BaseValues";
+    private static final String ENCHANTMENT_VALUES = "EnchantmentValues";
+    private static final String TIERS = "TIERS";
+
+    private final int[] materialScores = new int[Material.values().length]; //Indexed by Material ordinal
+    private final HashMap<Enchantment, int[]> enchantmentScores = new HashMap<>(); //Indexed by level
+    private final int[] thresholds; //Sorted from lowest to highest
+    private final String[] prefixes;
+    private final String[] suffixes;
+
+    /**
+     * Compiles the given tiers config
+     *
+     * @param config The loaded tiers.yml (may be null)
+     */
+    TierTable(FileConfiguration config) {
+        ConfigurationSection section = config == null ? null : config.getConfigurationSection(BASE_VALUES);
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                Material mat = Material.matchMaterial(key);
+                if (mat != null) {
+                    materialScores[mat.ordinal()] = section.getInt(key);
+                }
+            }
+        }
+
+        section = config == null ? null : config.getConfigurationSection(ENCHANTMENT_VALUES);
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                Enchantment enchantment = Enchantment.getByName(key);
+                ConfigurationSection levels = section.getConfigurationSection(key);
+                if (enchantment == null || levels == null) {
+                    continue;
+                }
+                int[] scores = new int[0];
+                for (String level : levels.getKeys(false)) {
+                    try {
+                        int lvl = Integer.parseInt(level);
+                        if (lvl >= 0) {
+                            if (lvl >= scores.length) {
+                                scores = Arrays.copyOf(scores, lvl + 1);
+                            }
+                            scores[lvl] = levels.getInt(level);
+                        }
+                    } catch (NumberFormatException ex) {
+                        //Levels which are not numbers can never match
+                    }
+                }
+                enchantmentScores.put(enchantment, scores);
+            }
+        }
+
+        //Sort the tiers by threshold
+        ArrayList<int[]> tiers = new ArrayList<>(); //{ threshold, position in the config }
+        ArrayList<String> prefixList = new ArrayList<>();
+        ArrayList<String> suffixList = new ArrayList<>();
+        section = config == null ? null : config.getConfigurationSection(TIERS);
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                try {
+                    tiers.add(new int[] { Integer.parseInt(key), prefixList.size() });
+                } catch (NumberFormatException ex) {
+                    continue;
+                }
+                //Hack to fix encoding issues
+                String prefix = section.getString(key + ".Prefix", "");
+                if (prefix.startsWith("Â")) {
+                    prefix = prefix.substring(1);
+                }
+                prefixList.add(prefix);
+                suffixList.add(section.getString(key + ".Suffix"));
+            }
+        }
+        int[][] sorted = tiers.toArray(new int[tiers.size()][]);
+        Arrays.sort(sorted, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return Integer.compare(o1[0], o2[0]);
+            }
+        });
+        thresholds = new int[sorted.length];
+        prefixes = new String[sorted.length];
+        suffixes = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            thresholds[i] = sorted[i][0];
+            prefixes[i] = prefixList.get(sorted[i][1]);
+            suffixes[i] = suffixList.get(sorted[i][1]);
+        }
+    }
+
+    /**
+     * Returns the tier of the given ItemStack
+     *
+     * @param item The given ItemStack
+     * @return The total score of the Material and Enchantments
+     */
+    int getTier(ItemStack item) {
+        int tier = materialScores[item.getType().ordinal()];
+        for (Map.Entry<Enchantment, Integer> entry : item.getEnchantments().entrySet()) {
+            int[] scores = enchantmentScores.get(entry.getKey());
+            int level = entry.getValue();
+            if (scores != null && level >= 0 && level < scores.length) {
+                tier += scores[level];
+            }
+        }
+        return tier;
+    }
+
+    /**
+     * Returns the index of the highest threshold which the given tier exceeds
+     *
+     * @param tier The tier of an Item
+     * @return The index of the prefix and suffix or -1 if the tier does not exceed any threshold
+     */
+    int find(int tier) {
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid] < tier) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Returns the prefix of the given tier index
+     *
+     * @param index The index returned by find
+     * @return The prefix which should be inserted before the name
+     */
+    String getPrefix(int index) {
+        return prefixes[index];
+    }
+
+    /**
+     * Returns the suffix of the given tier index
+     *
+     * @param index The index returned by find
+     * @return The suffix which should be appended to the name
+     */
+    String getSuffix(int index) {
+        return suffixes[index];
+    }
+}